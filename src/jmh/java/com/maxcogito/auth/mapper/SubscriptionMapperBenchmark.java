@@ -0,0 +1,55 @@
+package com.maxcogito.auth.mapper;
+
+import com.maxcogito.auth.domain.SubscriptionServiceKind;
+import com.maxcogito.auth.domain.SubscriptionStatus;
+import com.maxcogito.auth.domain.SubscriptionTerm;
+import com.maxcogito.auth.domain.User;
+import com.maxcogito.auth.domain.UserSubscription;
+import com.maxcogito.auth.dto.SubscriptionViewDto;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private List<UserSubscription> subs;
+
+    @Setup
+    public void setup() {
+        User user = new User();
+        user.setUsername("alice");
+        SubscriptionServiceKind[] kinds = SubscriptionServiceKind.values();
+        SubscriptionTerm[] terms = SubscriptionTerm.values();
+
+        subs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            UserSubscription s = new UserSubscription();
+            s.setId((long) i);
+            s.setUser(user);
+            s.setServiceKind(kinds[i % kinds.length]);
+            s.setStatus(SubscriptionStatus.ACTIVE);
+            s.setTerm(terms[i % terms.length]);
+            s.setRequestedAt(Instant.now());
+            s.setApprovedAt(Instant.now());
+            s.setValidUntil(Instant.now());
+            subs.add(s);
+        }
+    }
+
+    @Benchmark
+    public List<SubscriptionViewDto> toDtoList() {
+        return SubscriptionMapper.toDtoList(subs);
+    }
+}
@@ -0,0 +1,21 @@
+package com.maxcogito.auth.mfa;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OtpGeneratorBenchmark {
+
+    private final OtpGenerator generator = new OtpGenerator();
+
+    @Benchmark
+    public String generate6() {
+        return generator.generate6();
+    }
+}
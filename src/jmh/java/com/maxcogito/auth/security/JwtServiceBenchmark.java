@@ -0,0 +1,52 @@
+package com.maxcogito.auth.security;
+
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access-token issue and verify cost (HS256, no claims cache, epochs disabled so no DB).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final String SECRET = Base64.getEncoder().encodeToString(new byte[64]);
+
+    private JwtService jwtService;
+    private UUID userId;
+    private Set<String> roles;
+    private String token;
+
+    @Setup
+    public void setup() {
+        Clock clock = Clock.systemUTC();
+        TokenEpochRegistry epochs = new TokenEpochRegistry(null, clock, false, 15);
+        JwtKeyRing keyRing = new JwtKeyRing(null, new SecretCipher("", SECRET), null, clock,
+                "hs256", 30, 600, 60_000, 15, 14);
+        jwtService = new JwtService(SECRET, "bench", 15, 14, true, 5, "hs256", true, epochs, keyRing);
+
+        userId = UUID.randomUUID();
+        roles = Set.of("ROLE_USER", "ROLE_DATA_SERVICE", "ROLE_IDENTITY_SERVICE");
+        token = jwtService.createToken(userId, userId.toString(), "alice", "alice@example.com", roles);
+    }
+
+    @Benchmark
+    public String createToken() {
+        return jwtService.createToken(userId, userId.toString(), "alice", "alice@example.com", roles);
+    }
+
+    @Benchmark
+    public Claims parseClaims() {
+        return jwtService.parseClaims(token);
+    }
+}
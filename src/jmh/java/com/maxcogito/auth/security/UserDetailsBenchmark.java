@@ -0,0 +1,42 @@
+package com.maxcogito.auth.security;
+
+import com.maxcogito.auth.domain.Role;
+import com.maxcogito.auth.domain.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDetailsBenchmark {
+
+    @Param({"1", "5", "20"})
+    public int roleCount;
+
+    private UserDetailsImpl userDetails;
+
+    @Setup
+    public void setup() {
+        Set<Role> roles = new HashSet<>();
+        for (int i = 0; i < roleCount; i++) {
+            roles.add(new Role("ROLE_BENCH_" + i));
+        }
+        User user = new User();
+        user.setUsername("alice");
+        user.setRoles(roles);
+        userDetails = new UserDetailsImpl(user);
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return userDetails.getAuthorities();
+    }
+}
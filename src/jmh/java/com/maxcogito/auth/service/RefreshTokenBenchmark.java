@@ -0,0 +1,34 @@
+package com.maxcogito.auth.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opaque refresh-token generation and the SHA-256 lookup hash done on every refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefreshTokenBenchmark {
+
+    private String raw;
+
+    @Setup
+    public void setup() {
+        raw = RefreshTokenService.randomOpaque();
+    }
+
+    @Benchmark
+    public String randomOpaque() {
+        return RefreshTokenService.randomOpaque();
+    }
+
+    @Benchmark
+    public String hashToken() {
+        return RefreshTokenService.hashToken(raw);
+    }
+}
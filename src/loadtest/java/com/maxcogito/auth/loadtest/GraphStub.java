@@ -0,0 +1,98 @@
+package com.maxcogito.auth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline stand-in for Microsoft Graph mail: POST /v1.0/$batch and POST /v1.0/users/{sender}/sendMail.
+ * Every {@code throttleEvery}-th batch item is answered 429 with Retry-After: 1, so the retry path
+ * of GraphBatchMailSender is exercised too (0 disables throttling).
+ */
+final class GraphStub implements AutoCloseable {
+
+    static final LongAdder BATCHES = new LongAdder();
+    static final LongAdder MAILS = new LongAdder();
+    static final LongAdder THROTTLED = new LongAdder();
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final HttpServer server;
+    private final int throttleEvery;
+    private final LongAdder items = new LongAdder();
+
+    GraphStub(int throttleEvery) throws IOException {
+        this.throttleEvery = throttleEvery;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/v1.0/$batch", this::batch);
+        this.server.createContext("/v1.0/users/", this::sendMail);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    /** Value for msgraph.baseUrl. */
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1.0";
+    }
+
+    private void batch(HttpExchange ex) throws IOException {
+        try (ex) {
+            JsonNode requests = JSON.readTree(ex.getRequestBody()).path("requests");
+            if (requests.size() > 20) {
+                respond(ex, 400, "{\"error\":{\"code\":\"BadRequest\",\"message\":\"More than 20 requests\"}}");
+                return;
+            }
+            BATCHES.increment();
+            ArrayNode responses = JSON.createArrayNode();
+            for (JsonNode r : requests) {
+                ObjectNode out = responses.addObject();
+                out.put("id", r.path("id").asText());
+                items.increment();
+                if (throttleEvery > 0 && items.sum() % throttleEvery == 0) {
+                    THROTTLED.increment();
+                    out.put("status", 429);
+                    out.putObject("headers").put("Retry-After", "1");
+                    out.putObject("body").putObject("error").put("code", "TooManyRequests");
+                } else {
+                    MAILS.increment();
+                    out.put("status", 202);
+                }
+            }
+            ObjectNode body = JSON.createObjectNode();
+            body.set("responses", responses);
+            respond(ex, 200, JSON.writeValueAsString(body));
+        }
+    }
+
+    private void sendMail(HttpExchange ex) throws IOException {
+        try (ex) {
+            ex.getRequestBody().readAllBytes();
+            MAILS.increment();
+            ex.sendResponseHeaders(202, -1);
+        }
+    }
+
+    private static void respond(HttpExchange ex, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
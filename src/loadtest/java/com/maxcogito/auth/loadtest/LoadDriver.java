@@ -0,0 +1,368 @@
+package com.maxcogito.auth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop driver: requests are started on a fixed schedule regardless of how fast earlier ones
+ * complete, and latency is measured from the scheduled start, so queueing in the server shows up
+ * in the percentiles instead of silently lowering the offered rate (no coordinated omission).
+ */
+final class LoadDriver {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadDriver.class);
+
+    enum Endpoint {
+        LOGIN("login"), REFRESH("refresh"), ME("me"), SUBSCRIPTIONS("subscriptions"),
+        QUOTE("quote"), CHECKOUT("checkout");
+
+        final String key;
+
+        Endpoint(String key) { this.key = key; }
+
+        static Endpoint of(String key) {
+            for (Endpoint e : values()) {
+                if (e.key.equalsIgnoreCase(key.trim())) return e;
+            }
+            throw new IllegalArgumentException("Unknown endpoint in mix: " + key);
+        }
+    }
+
+    /** One seeded user and its current token pair. */
+    static final class Session {
+        final String username;
+        final String password;
+        volatile String accessToken;
+        volatile String refreshToken;
+        volatile List<Long> subscriptionIds = List.of();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Session(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+
+    static final class Stats {
+        final Histogram latencyMicros = new ConcurrentHistogram(3);
+        final LongAdder ok = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+    }
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final ExecutorService httpExecutor = Executors.newFixedThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(httpExecutor)
+            .build();
+
+    private final String baseUrl;
+    private final Duration requestTimeout;
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+    private final List<Session> sessions = new ArrayList<>();
+
+    LoadDriver(String baseUrl, Duration requestTimeout) {
+        this.baseUrl = baseUrl.replaceAll("/+$", "");
+        this.requestTimeout = requestTimeout;
+        for (Endpoint e : Endpoint.values()) {
+            stats.put(e, new Stats());
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Seeding (closed-loop, not measured)
+    // ---------------------------------------------------------------------
+
+    void seed(int users, int parallelism) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<CompletableFuture<Session>> futures = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String username = "lt_user_" + i;
+            futures.add(CompletableFuture.supplyAsync(() -> seedOne(username), pool));
+        }
+        for (CompletableFuture<Session> f : futures) {
+            Session s = f.join();
+            if (s != null) sessions.add(s);
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        if (sessions.isEmpty()) {
+            throw new IllegalStateException("No user could be seeded; is the target up?");
+        }
+        log.info("Seeded {} sessions", sessions.size());
+    }
+
+    private Session seedOne(String username) {
+        Session s = new Session(username, "LoadTest#" + username);
+        try {
+            Map<String, Object> register = new LinkedHashMap<>();
+            register.put("username", username);
+            register.put("password", s.password);
+            register.put("email", username + "@loadtest.local");
+            register.put("firstName", "Load");
+            register.put("lastName", "Test");
+            register.put("mfaRequired", false);
+            send(post("/api/v1/auth/register/user", register, null)); // 4xx when re-running: already exists
+
+            HttpResponse<String> login = send(post("/api/v1/auth/login", loginBody(s), null));
+            if (login.statusCode() != 200) {
+                log.warn("Seed login failed for {}: {}", username, login.statusCode());
+                return null;
+            }
+            applyTokens(s, login.body());
+
+            HttpResponse<String> subs = send(post("/api/v1/subscriptions/request",
+                    Map.of("serviceIds", List.of("identity", "data")), s.accessToken));
+            if (subs.statusCode() == 200) {
+                List<Long> ids = new ArrayList<>();
+                for (JsonNode n : json.readTree(subs.body())) {
+                    ids.add(n.get("id").asLong());
+                }
+                s.subscriptionIds = List.copyOf(ids);
+            }
+            return s;
+        } catch (Exception e) {
+            log.warn("Seeding {} failed: {}", username, e.toString());
+            return null;
+        }
+    }
+
+    // ---------------------------------------------------------------------
+    // Measured run
+    // ---------------------------------------------------------------------
+
+    void run(Map<Endpoint, Integer> mix, double ratePerSecond, Duration warmup, Duration duration, int maxInFlight) {
+        Endpoint[] wheel = expand(mix);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        log.info("Driving {} req/s for {}s (+{}s warmup), mix={}", ratePerSecond,
+                duration.toSeconds(), warmup.toSeconds(), mix);
+
+        long intended = start;
+        while (intended < end) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint ep = wheel[ThreadLocalRandom.current().nextInt(wheel.length)];
+            boolean measured = intended >= measureFrom;
+            if (!inFlight.tryAcquire()) {
+                if (measured) stats.get(ep).dropped.increment();
+            } else {
+                fire(ep, intended, measured).whenComplete((r, t) -> inFlight.release());
+            }
+            intended += intervalNanos;
+        }
+
+        // let outstanding requests finish so their (slow) latencies are counted
+        try {
+            inFlight.tryAcquire(maxInFlight, requestTimeout.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        httpExecutor.shutdown();
+    }
+
+    private CompletableFuture<?> fire(Endpoint ep, long intendedNanos, boolean measured) {
+        Session s = sessions.get(ThreadLocalRandom.current().nextInt(sessions.size()));
+        HttpRequest req;
+        switch (ep) {
+            case LOGIN -> req = post("/api/v1/auth/login", loginBody(s), null);
+            case REFRESH -> {
+                s = claimForRefresh();
+                if (s == null) {
+                    ep = Endpoint.ME; // every session is mid-refresh; keep the offered rate
+                    s = sessions.get(ThreadLocalRandom.current().nextInt(sessions.size()));
+                    req = get("/api/v1/auth/me", s.accessToken);
+                } else {
+                    req = post("/api/v1/auth/token/refresh", Map.of("refreshToken", s.refreshToken), null);
+                }
+            }
+            case ME -> req = get("/api/v1/auth/me", s.accessToken);
+            case SUBSCRIPTIONS -> req = get("/api/v1/subscriptions/me", s.accessToken);
+            case QUOTE -> req = post("/api/v1/payments/quote",
+                    Map.of("subscriptionIds", s.subscriptionIds, "currency", "USD"), s.accessToken);
+            case CHECKOUT -> req = post("/api/v1/payments/checkout/multi",
+                    Map.of("subscriptionIds", s.subscriptionIds, "currency", "USD"), s.accessToken);
+            default -> throw new IllegalStateException();
+        }
+
+        final Endpoint endpoint = ep;
+        final Session session = s;
+        return http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+                .handle((resp, err) -> {
+                    long micros = (System.nanoTime() - intendedNanos) / 1_000;
+                    if (endpoint == Endpoint.REFRESH) {
+                        if (err == null && resp.statusCode() == 200) {
+                            applyTokensQuietly(session, resp.body());
+                        }
+                        session.refreshing.set(false);
+                    }
+                    if (measured) {
+                        Stats st = stats.get(endpoint);
+                        st.latencyMicros.recordValue(Math.max(1, micros));
+                        if (err == null && resp.statusCode() < 400) st.ok.increment();
+                        else st.errors.increment();
+                    }
+                    return null;
+                });
+    }
+
+    private Session claimForRefresh() {
+        for (int i = 0; i < 8; i++) {
+            Session s = sessions.get(ThreadLocalRandom.current().nextInt(sessions.size()));
+            if (s.refreshing.compareAndSet(false, true)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------------------
+    // Reporting
+    // ---------------------------------------------------------------------
+
+    void report(Duration duration, Path outDir, PrintStream out) throws IOException {
+        Files.createDirectories(outDir);
+        double seconds = duration.toMillis() / 1000.0;
+
+        out.printf(Locale.ROOT, "%n%-14s %9s %7s %7s %9s %9s %9s %9s %9s %9s%n",
+                "endpoint", "ok", "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms");
+        StringBuilder summary = new StringBuilder("{\n  \"durationSeconds\": ")
+                .append(seconds).append(",\n  \"endpoints\": {");
+        boolean first = true;
+        for (Map.Entry<Endpoint, Stats> e : stats.entrySet()) {
+            Stats st = e.getValue();
+            Histogram h = st.latencyMicros;
+            long total = h.getTotalCount();
+            if (total == 0 && st.dropped.sum() == 0) continue;
+
+            double rps = total / seconds;
+            out.printf(Locale.ROOT, "%-14s %9d %7d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    e.getKey().key, st.ok.sum(), st.errors.sum(), st.dropped.sum(), rps,
+                    ms(h, 50), ms(h, 90), ms(h, 99), ms(h, 99.9), h.getMaxValue() / 1000.0);
+
+            summary.append(first ? "\n" : ",\n").append(String.format(Locale.ROOT,
+                    "    \"%s\": {\"ok\": %d, \"errors\": %d, \"dropped\": %d, \"throughput\": %.2f, "
+                            + "\"p50Ms\": %.3f, \"p90Ms\": %.3f, \"p99Ms\": %.3f, \"p999Ms\": %.3f, \"maxMs\": %.3f}",
+                    e.getKey().key, st.ok.sum(), st.errors.sum(), st.dropped.sum(), rps,
+                    ms(h, 50), ms(h, 90), ms(h, 99), ms(h, 99.9), h.getMaxValue() / 1000.0));
+            first = false;
+
+            // full percentile distribution, plottable with HdrHistogram's plotter
+            try (PrintStream hgrm = new PrintStream(outDir.resolve(e.getKey().key + ".hgrm").toFile())) {
+                h.outputPercentileDistribution(hgrm, 1000.0);
+            }
+        }
+        summary.append("\n  }\n}\n");
+        Files.writeString(outDir.resolve("summary.json"), summary);
+        out.printf("%nHistograms and summary.json written to %s%n", outDir.toAbsolutePath());
+    }
+
+    private static double ms(Histogram h, double percentile) {
+        return h.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    // ---------------------------------------------------------------------
+
+    static Map<Endpoint, Integer> parseMix(String spec) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String part : spec.split(",")) {
+            if (part.isBlank()) continue;
+            String[] kv = part.split("=");
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) mix.put(Endpoint.of(kv[0]), weight);
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Empty mix: " + spec);
+        }
+        return mix;
+    }
+
+    private static Endpoint[] expand(Map<Endpoint, Integer> mix) {
+        List<Endpoint> wheel = new ArrayList<>();
+        mix.forEach((ep, w) -> {
+            for (int i = 0; i < w; i++) wheel.add(ep);
+        });
+        return wheel.toArray(new Endpoint[0]);
+    }
+
+    private Map<String, Object> loginBody(Session s) {
+        return Map.of("usernameOrEmail", s.username, "password", s.password);
+    }
+
+    private void applyTokens(Session s, String body) throws IOException {
+        JsonNode n = json.readTree(body);
+        s.accessToken = n.get("token").asText();
+        s.refreshToken = n.get("refreshToken").asText();
+    }
+
+    private void applyTokensQuietly(Session s, String body) {
+        try {
+            applyTokens(s, body);
+        } catch (Exception ignored) {
+            // keep the previous pair; the next refresh on this session will fail and be counted
+        }
+    }
+
+    private HttpRequest post(String path, Object body, String bearer) {
+        try {
+            HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(requestTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+            if (bearer != null) b.header("Authorization", "Bearer " + bearer);
+            return b.build();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest get(String path, String bearer) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(requestTimeout)
+                .header("Authorization", "Bearer " + bearer)
+                .GET()
+                .build();
+    }
+
+    private HttpResponse<String> send(HttpRequest req) throws IOException, InterruptedException {
+        return http.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+}
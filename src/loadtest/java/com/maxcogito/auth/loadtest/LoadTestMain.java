@@ -0,0 +1,84 @@
+package com.maxcogito.auth.loadtest;
+
+import com.maxcogito.auth.AuthApplication;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Self-contained throughput test: boots the app on an embedded PostgreSQL with Graph/Twilio/MockPay
+ * stubbed (-Dloadtest.graphThrottleEvery=N makes the Graph stub answer every Nth mail with 429), seeds users, then drives a fixed arrival rate against a configurable endpoint mix.
+ * MockPay latency is -Dloadtest.mockpayLatencyMs plus up to -Dloadtest.mockpayJitterMs; with
+ * -Dloadtest.mockpayStallEvery=N every Nth checkout session takes -Dloadtest.mockpayStallMs.
+ *
+ * <pre>
+ *   mvn -Ploadtest verify -Dloadtest.rate=300 -Dloadtest.duration=120 \
+ *       -Dloadtest.mix=login=5,refresh=10,me=50,subscriptions=25,quote=10
+ * </pre>
+ *
+ * Set -Dloadtest.target=http://host:port to drive an already running instance instead.
+ */
+public final class LoadTestMain {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadTestMain.class);
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+        Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup", 15));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration", 60));
+        int users = Integer.getInteger("loadtest.users", 200);
+        int maxInFlight = Integer.getInteger("loadtest.maxInFlight", 2000);
+        long mockPayLatencyMs = Long.getLong("loadtest.mockpayLatencyMs", 50);
+        long mockPayJitterMs = Long.getLong("loadtest.mockpayJitterMs", 0);
+        int mockPayStallEvery = Integer.getInteger("loadtest.mockpayStallEvery", 0);
+        long mockPayStallMs = Long.getLong("loadtest.mockpayStallMs", 8_000);
+        int graphThrottleEvery = Integer.getInteger("loadtest.graphThrottleEvery", 0);
+        String mix = System.getProperty("loadtest.mix", "login=5,refresh=10,me=50,subscriptions=25,quote=10");
+        String target = System.getProperty("loadtest.target", "");
+        Path outDir = Path.of(System.getProperty("loadtest.out", "target/loadtest"));
+
+        EmbeddedPostgres postgres = null;
+        MockPayStub mockPay = null;
+        GraphStub graph = null;
+        ConfigurableApplicationContext ctx = null;
+        try {
+            String baseUrl = target;
+            if (baseUrl.isBlank()) {
+                postgres = EmbeddedPostgres.builder().start();
+                mockPay = new MockPayStub(mockPayLatencyMs, mockPayJitterMs, mockPayStallEvery, mockPayStallMs);
+                graph = new GraphStub(graphThrottleEvery);
+
+                SpringApplication app = new SpringApplication(AuthApplication.class);
+                app.setAdditionalProfiles("loadtest");
+                ctx = app.run(
+                        "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--mockpay.baseUrl=" + mockPay.baseUrl(),
+                        "--msgraph.baseUrl=" + graph.baseUrl());
+                baseUrl = "http://127.0.0.1:" + ctx.getEnvironment().getProperty("local.server.port");
+                log.info("App started at {}", baseUrl);
+            }
+
+            LoadDriver driver = new LoadDriver(baseUrl, Duration.ofSeconds(10));
+            driver.seed(users, 16);
+            driver.run(LoadDriver.parseMix(mix), rate, warmup, duration, maxInFlight);
+            driver.report(duration, outDir, System.out);
+            log.info("Stubbed mails sent: {} in {} Graph batches ({} throttled), SMS sent: {}, MockPay sessions: {} ({} stalled)",
+                    GraphStub.MAILS.sum(), GraphStub.BATCHES.sum(), GraphStub.THROTTLED.sum(), LoadTestStubs.SMS.sum(),
+                    MockPayStub.SESSIONS.sum(), MockPayStub.STALLED.sum());
+        } finally {
+            if (ctx != null) ctx.close();
+            if (mockPay != null) mockPay.close();
+            if (graph != null) graph.close();
+            if (postgres != null) postgres.close();
+        }
+        System.exit(0);
+    }
+
+    private LoadTestMain() {
+    }
+}
@@ -0,0 +1,55 @@
+package com.maxcogito.auth.loadtest;
+
+import com.maxcogito.auth.mfa.SmsService;
+import com.maxcogito.auth.ms.AadTokenCache;
+import com.maxcogito.auth.ms.AadTokenProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the load test on the box: Twilio SMS is replaced and AAD hands out a fixed token, while
+ * Graph mail goes to GraphStub (msgraph.baseUrl) so the batching path runs for real.
+ * Only active with the "loadtest" profile (LoadTestMain sets it).
+ */
+@Configuration
+@Profile("loadtest")
+public class LoadTestStubs {
+
+    static final LongAdder SMS = new LongAdder();
+
+    @Bean
+    @Primary
+    public AadTokenProvider stubAadTokenProvider(AadTokenCache tokens) {
+        return new AadTokenProvider(tokens) {
+            @Override
+            public String getBearer() {
+                return "loadtest";
+            }
+
+            @Override
+            public String refresh() {
+                return "loadtest";
+            }
+
+            @Override
+            public String refresh(String rejectedBearer) {
+                return "loadtest";
+            }
+        };
+    }
+
+    @Bean
+    @Primary
+    public SmsService stubSmsService() {
+        return new SmsService() {
+            @Override
+            public void send(String toNumberE164, String body) {
+                SMS.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.maxcogito.auth.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal stand-in for the mock-payment-gateway: POST /mockpay/api/v1/sessions returns a session,
+ * after {@code latencyMs} plus up to {@code jitterMs} of random delay. With {@code stallEvery > 0}
+ * every Nth session instead takes {@code stallMs}, so a slow gateway can be reproduced (set it past
+ * mockpay.timeoutMs to exercise timeouts and the orphaned-checkout sweeper).
+ */
+final class MockPayStub implements AutoCloseable {
+
+    static final LongAdder SESSIONS = new LongAdder();
+    static final LongAdder STALLED = new LongAdder();
+
+    private final HttpServer server;
+    private final long latencyMs;
+    private final long jitterMs;
+    private final int stallEvery;
+    private final long stallMs;
+    private final AtomicLong seq = new AtomicLong();
+
+    MockPayStub(long latencyMs) throws IOException {
+        this(latencyMs, 0, 0, 0);
+    }
+
+    MockPayStub(long latencyMs, long jitterMs, int stallEvery, long stallMs) throws IOException {
+        this.latencyMs = latencyMs;
+        this.jitterMs = jitterMs;
+        this.stallEvery = stallEvery;
+        this.stallMs = stallMs;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/mockpay/api/v1/sessions", this::createSession);
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    private void createSession(HttpExchange ex) throws IOException {
+        try (ex) {
+            ex.getRequestBody().readAllBytes();
+            long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+            if (stallEvery > 0 && seq.incrementAndGet() % stallEvery == 0) {
+                delay = stallMs;
+                STALLED.increment();
+            }
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            SESSIONS.increment();
+            String id = UUID.randomUUID().toString();
+            byte[] body = ("{\"sessionId\":\"" + id + "\",\"checkoutUrl\":\"/mockpay/checkout/" + id + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
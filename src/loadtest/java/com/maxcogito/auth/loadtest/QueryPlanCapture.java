@@ -0,0 +1,147 @@
+package com.maxcogito.auth.loadtest;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Wraps the DataSource so that, while {@link #capture} runs on a thread, every prepared statement
+ * that thread executes is EXPLAINed first with the same bind values. Plans are the ones Postgres
+ * would really pick for those values, not generic ones. Only active with the "queryplan" profile
+ * (QueryPlanCheck sets it).
+ */
+@Configuration
+@Profile("queryplan")
+public class QueryPlanCapture {
+
+    /** One executed statement; json is the EXPLAIN (FORMAT JSON) output, or null with error set. */
+    record Plan(String sql, String json, String error) {}
+
+    private static final ThreadLocal<List<Plan>> CAPTURING = new ThreadLocal<>();
+    private static final Set<String> EXECUTE = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+
+    static List<Plan> capture(Runnable work) {
+        List<Plan> plans = new ArrayList<>();
+        CAPTURING.set(plans);
+        try {
+            work.run();
+        } finally {
+            CAPTURING.remove();
+        }
+        return plans;
+    }
+
+    @Bean
+    static BeanPostProcessor explainingDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource ds ? wrap(DataSource.class, ds, dataSourceHandler(ds)) : bean;
+            }
+        };
+    }
+
+    private static InvocationHandler dataSourceHandler(DataSource target) {
+        return (proxy, method, args) -> {
+            Object result = call(target, method, args);
+            return "getConnection".equals(method.getName())
+                    ? wrap(Connection.class, (Connection) result, connectionHandler((Connection) result))
+                    : result;
+        };
+    }
+
+    private static InvocationHandler connectionHandler(Connection target) {
+        return (proxy, method, args) -> {
+            Object result = call(target, method, args);
+            if ("prepareStatement".equals(method.getName()) && args[0] instanceof String sql) {
+                PreparedStatement ps = (PreparedStatement) result;
+                return wrap(PreparedStatement.class, ps, new StatementHandler(target, ps, sql));
+            }
+            return result;
+        };
+    }
+
+    /** Records setXxx(index, ...) calls so they can be replayed onto the EXPLAIN statement. */
+    private static final class StatementHandler implements InvocationHandler {
+        private final Connection connection;
+        private final PreparedStatement target;
+        private final String sql;
+        private final List<Object[]> bindings = new ArrayList<>();
+        private boolean batchExplained;
+
+        StatementHandler(Connection connection, PreparedStatement target, String sql) {
+            this.connection = connection;
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bindings.add(new Object[]{method, args.clone()});
+            } else if ("clearParameters".equals(name)) {
+                bindings.clear();
+            } else if ((args == null || args.length == 0) && EXECUTE.contains(name)) {
+                explain();
+            } else if ("addBatch".equals(name) && (args == null || args.length == 0) && !batchExplained) {
+                batchExplained = true; // the first row stands in for the whole batch
+                explain();
+            }
+            return call(target, method, args);
+        }
+
+        private void explain() throws Exception {
+            List<Plan> plans = CAPTURING.get();
+            if (plans == null) {
+                return;
+            }
+            // a failed EXPLAIN must not poison the caller's transaction
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement ps = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + sql)) {
+                for (Object[] b : bindings) {
+                    ((Method) b[0]).invoke(ps, (Object[]) b[1]);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    plans.add(new Plan(sql, rs.getString(1), null));
+                }
+                if (savepoint != null) {
+                    connection.releaseSavepoint(savepoint);
+                }
+            } catch (Exception e) {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                }
+                Throwable cause = e instanceof InvocationTargetException ite ? ite.getCause() : e;
+                plans.add(new Plan(sql, null, cause.getMessage()));
+            }
+        }
+    }
+
+    private static <T> T wrap(Class<T> type, T target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(QueryPlanCapture.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.maxcogito.auth.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.maxcogito.auth.AuthApplication;
+import com.maxcogito.auth.domain.RefreshToken;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.ParameterizedType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Query-plan regression check: boots the app on an embedded PostgreSQL, seeds it to a size where
+ * the planner prefers indexes, then calls every custom {@code @Query} repository method inside a
+ * rolled-back transaction and EXPLAINs each statement it runs (see QueryPlanCapture).
+ *
+ * Fails (exit 1) if a plan sequentially scans a table of at least -Dloadtest.explain.smallTableRows
+ * rows while expecting to keep less than -Dloadtest.explain.maxScanFraction of it; a seq scan that
+ * reads most of a table (group-by counts, bulk purges) is the right plan and is not reported.
+ *
+ * <pre>
+ *   mvn -Ploadtest verify -Dloadtest.main=com.maxcogito.auth.loadtest.QueryPlanCheck
+ * </pre>
+ *
+ * Every plan is written to target/loadtest/query-plans.json.
+ */
+public final class QueryPlanCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanCheck.class);
+
+    private static final String REPOSITORY_PACKAGE = "com.maxcogito.auth.repo";
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("loadtest.users", 200);
+        int clones = Integer.getInteger("loadtest.explain.userClones", 50);
+        long smallTableRows = Long.getLong("loadtest.explain.smallTableRows", 1_000);
+        double maxScanFraction = Double.parseDouble(System.getProperty("loadtest.explain.maxScanFraction", "0.2"));
+        Path outDir = Path.of(System.getProperty("loadtest.out", "target/loadtest"));
+
+        EmbeddedPostgres postgres = null;
+        MockPayStub mockPay = null;
+        GraphStub graph = null;
+        ConfigurableApplicationContext ctx = null;
+        int failures;
+        try {
+            postgres = EmbeddedPostgres.builder().start();
+            mockPay = new MockPayStub(0, 0, 0, 0);
+            graph = new GraphStub(0);
+
+            SpringApplication app = new SpringApplication(AuthApplication.class);
+            app.setAdditionalProfiles("loadtest", "queryplan");
+            ctx = app.run(
+                    "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                    "--mockpay.baseUrl=" + mockPay.baseUrl(),
+                    "--msgraph.baseUrl=" + graph.baseUrl());
+            String baseUrl = "http://127.0.0.1:" + ctx.getEnvironment().getProperty("local.server.port");
+
+            new LoadDriver(baseUrl, Duration.ofSeconds(10)).seed(users, 16);
+            JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+            seed(jdbc, clones);
+            jdbc.execute("VACUUM ANALYZE");
+
+            Map<String, Long> tableRows = new HashMap<>();
+            jdbc.query("select relname, reltuples::bigint from pg_class " +
+                            "where relkind in ('r', 'p') and relnamespace = 'public'::regnamespace",
+                    rs -> { tableRows.put(rs.getString(1), rs.getLong(2)); });
+            log.info("Seeded tables: {}", tableRows);
+
+            Samples samples = new Samples(
+                    jdbc.queryForObject("select user_id from refresh_token limit 1", UUID.class),
+                    jdbc.queryForObject("select min(id) from user_subscription", Long.class),
+                    jdbc.queryForObject("select min(id) from payment_transaction", Long.class),
+                    Instant.now());
+
+            failures = check(ctx, samples, tableRows, smallTableRows, maxScanFraction, outDir);
+        } finally {
+            if (ctx != null) ctx.close();
+            if (mockPay != null) mockPay.close();
+            if (graph != null) graph.close();
+            if (postgres != null) postgres.close();
+        }
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Grows the HTTP-seeded users into a database shaped like a live one between purges: most
+     * refresh tokens rotated or expired, most outbox/webhook rows delivered, a day of history.
+     */
+    private static void seed(JdbcTemplate jdbc, int clones) {
+        jdbc.update("""
+            insert into app_user
+            select (jsonb_populate_record(null::app_user, to_jsonb(u) || jsonb_build_object(
+                'id', gen_random_uuid(),
+                'username', left(u.username, 50) || '_' || g,
+                'email', g || '_' || u.email,
+                'token_epoch_changed_at', null))).*
+            from app_user u cross join generate_series(1, ?) g
+            """, clones);
+
+        // 5% live, the rest rotated or expired
+        jdbc.update("""
+            insert into refresh_token (user_id, token, expires_at, revoked, created_at, revoked_at, last_used_at)
+            select id, md5(random()::text) || md5(random()::text),
+                   case when r < 0.55 then c + interval '14 days' else c + random() * (now() - c) end,
+                   r >= 0.05 and r < 0.55, c,
+                   case when r >= 0.05 and r < 0.55 then c + interval '1 hour' end,
+                   c + random() * interval '1 hour'
+            from (select u.id, now() - random() * interval '7 days' as c, random() as r
+                  from app_user u cross join generate_series(1, 20) g) s
+            """);
+        jdbc.update("""
+            insert into verification_token (user_id, token, expires_at, used)
+            select id, md5(random()::text) || md5(random()::text),
+                   case when r < 0.5 then now() + interval '1 day' else now() - interval '1 day' end, r >= 0.05 and r < 0.5
+            from (select u.id, random() as r from app_user u cross join generate_series(1, 2) g) s
+            """);
+        jdbc.update("""
+            insert into password_reset_token (user_id, token, expires_at, consumed)
+            select id, md5(random()::text) || md5(random()::text), now() - interval '1 day', true from app_user
+            """);
+        jdbc.update("""
+            insert into user_subscription (user_id, service_kind, status, trial, requested_at, approved_at, approved_by, valid_until, term)
+            select u.id, k.kind, 'ACTIVE', false, now() - interval '30 days', now() - interval '30 days', 'SYSTEM_PAYMENT',
+                   now() + random() * interval '300 days', 'TWELVE_MONTHS'
+            from app_user u
+            cross join (values ('USER_DATA_SERVICE'), ('USER_SECURITY_SERVICE')) k(kind)
+            where not exists (select 1 from user_subscription s where s.user_id = u.id and s.service_kind = k.kind)
+            """);
+        jdbc.update("""
+            insert into payment_transaction (user_id, provider, provider_id, amount, currency, status, created_at, updated_at)
+            select u.id, 'MOCK_STRIPE', 'qp-' || u.id || '-' || g, 10.00, 'USD',
+                   case when g = 1 and random() < 0.02 then 'CREATED' else 'SUCCEEDED' end,
+                   now() - random() * interval '30 days', now()
+            from app_user u cross join generate_series(1, 3) g
+            """);
+        // delivered over the last 25 hours, so a 24h retention cutoff purges a small slice
+        jdbc.update("""
+            insert into outbound_message (channel, recipient, subject, status, attempts, next_attempt_at, created_at, sent_at, last_error)
+            select 'EMAIL', email, 'Your login code', case when r < 0.01 then 'DEAD' else 'SENT' end, 1, c, c,
+                   case when r >= 0.01 then c + interval '1 second' end, case when r < 0.01 then 'rejected' end
+            from (select u.email, now() - random() * interval '25 hours' as c, random() as r
+                  from app_user u cross join generate_series(1, 5) g) s
+            """);
+        jdbc.update("""
+            insert into payment_webhook_event (provider, session_id, event, subscription_ids, status, attempts, next_attempt_at, received_at, processed_at)
+            select 'MOCK_STRIPE', provider_id, 'succeeded', '1', 'DONE', 1, c, c, c + interval '1 second'
+            from (select provider_id, now() - random() * interval '25 hours' as c
+                  from payment_transaction where provider_id is not null) s
+            """);
+    }
+
+    private static int check(ConfigurableApplicationContext ctx, Samples samples, Map<String, Long> tableRows,
+                             long smallTableRows, double maxScanFraction, Path outDir) throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+        ObjectMapper json = new ObjectMapper();
+        ArrayNode report = json.createArrayNode();
+        int failures = 0;
+
+        for (Object bean : ctx.getBeansOfType(Repository.class).values()) {
+            for (Class<?> repo : AopProxyUtils.proxiedUserInterfaces(bean)) {
+                if (!repo.getPackageName().equals(REPOSITORY_PACKAGE)) {
+                    continue;
+                }
+                List<Method> methods = new ArrayList<>();
+                for (Method m : repo.getDeclaredMethods()) {
+                    if (m.isAnnotationPresent(Query.class)) {
+                        methods.add(m);
+                    }
+                }
+                methods.sort(Comparator.comparing(Method::getName));
+
+                for (Method m : methods) {
+                    String name = repo.getSimpleName() + "." + m.getName();
+                    Object[] args = samples.argsFor(m);
+                    String[] error = new String[1];
+                    List<QueryPlanCapture.Plan> plans = QueryPlanCapture.capture(() -> tx.executeWithoutResult(status -> {
+                        status.setRollbackOnly();
+                        try {
+                            m.invoke(bean, args);
+                        } catch (InvocationTargetException e) {
+                            error[0] = String.valueOf(e.getCause());
+                        } catch (ReflectiveOperationException e) {
+                            error[0] = e.toString();
+                        }
+                    }));
+
+                    List<String> problems = new ArrayList<>();
+                    ArrayNode planNodes = json.createArrayNode();
+                    for (QueryPlanCapture.Plan p : plans) {
+                        ObjectNode node = planNodes.addObject().put("sql", p.sql());
+                        if (p.json() == null) {
+                            node.put("error", p.error());
+                            problems.add("EXPLAIN failed: " + p.error());
+                            continue;
+                        }
+                        JsonNode plan = json.readTree(p.json());
+                        node.set("plan", plan);
+                        findSeqScans(plan.path(0).path("Plan"), tableRows, smallTableRows, maxScanFraction, problems);
+                    }
+                    if (plans.isEmpty()) {
+                        problems.add("no statement executed" + (error[0] != null ? ": " + error[0] : ""));
+                    }
+
+                    report.addObject().put("query", name).put("ok", problems.isEmpty()).set("statements", planNodes);
+                    if (problems.isEmpty()) {
+                        log.info("OK    {}", name);
+                    } else {
+                        failures++;
+                        log.error("FAIL  {}: {}", name, String.join("; ", problems));
+                    }
+                }
+            }
+        }
+
+        Files.createDirectories(outDir);
+        json.writerWithDefaultPrettyPrinter().writeValue(outDir.resolve("query-plans.json").toFile(), report);
+        log.info("{} queries checked, {} failed; plans in {}", report.size(), failures, outDir.resolve("query-plans.json"));
+        return failures;
+    }
+
+    private static void findSeqScans(JsonNode node, Map<String, Long> tableRows, long smallTableRows,
+                                     double maxScanFraction, List<String> problems) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())) {
+            String table = node.path("Relation Name").asText();
+            long rows = tableRows.getOrDefault(table, 0L);
+            double kept = node.path("Plan Rows").asDouble();
+            if (rows >= smallTableRows && kept < maxScanFraction * rows) {
+                problems.add(String.format("seq scan on %s keeps ~%.0f of %d rows", table, kept, rows));
+            }
+        }
+        for (JsonNode child : node.path("Plans")) {
+            findSeqScans(child, tableRows, smallTableRows, maxScanFraction, problems);
+        }
+    }
+
+    /**
+     * Argument values by parameter type and @Param name: ids that exist in the seed, and cutoffs
+     * shaped like the ones the scheduled jobs pass.
+     */
+    private record Samples(UUID userId, Long subscriptionId, Long paymentId, Instant now) {
+
+        Object[] argsFor(Method m) {
+            Parameter[] params = m.getParameters();
+            Object[] args = new Object[params.length];
+            for (int i = 0; i < params.length; i++) {
+                Param named = params[i].getAnnotation(Param.class);
+                args[i] = sample(params[i], named != null ? named.value() : params[i].getName(), m.getDeclaringClass());
+            }
+            return args;
+        }
+
+        private Object sample(Parameter p, String name, Class<?> repo) {
+            Class<?> type = p.getType();
+            if (type == Instant.class) {
+                return switch (name) {
+                    case "before", "cutoff", "createdBefore" -> now.minus(Duration.ofHours(24));
+                    case "since" -> now.minus(Duration.ofMinutes(1));
+                    case "createdAfter" -> now.minus(RefreshToken.MAX_LIFETIME);
+                    case "afterValidUntil" -> Instant.EPOCH;
+                    default -> now;
+                };
+            }
+            if (type == UUID.class) {
+                return userId;
+            }
+            if (type == Long.class || type == long.class) {
+                return switch (name) {
+                    case "id" -> repo.getSimpleName().startsWith("Payment") ? paymentId : subscriptionId;
+                    case "afterId" -> 0L;
+                    default -> 1L;
+                };
+            }
+            if (type == Integer.class || type == int.class) {
+                return "keep".equals(name) ? 5 : 50;
+            }
+            if (type == String.class) {
+                return switch (name) {
+                    case "status" -> "FAILED";
+                    case "provider" -> "MOCK_STRIPE";
+                    default -> "qp-sample";
+                };
+            }
+            if (type.isAssignableFrom(List.class)
+                    && p.getParameterizedType() instanceof ParameterizedType pt
+                    && pt.getActualTypeArguments()[0] == UUID.class) {
+                return List.of(userId);
+            }
+            if (type.isAssignableFrom(List.class)) {
+                return List.of(subscriptionId);
+            }
+            throw new IllegalArgumentException("No sample value for " + repo.getSimpleName() + " parameter " + name + " (" + type + ")");
+        }
+    }
+
+    private QueryPlanCheck() {
+    }
+}
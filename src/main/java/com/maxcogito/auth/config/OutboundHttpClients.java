@@ -0,0 +1,110 @@
+package com.maxcogito.auth.config;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One pooled Apache HttpClient per outbound destination, shared by every RestTemplate that talks to it.
+ *
+ * Connections are kept alive and reused, so a call no longer pays a TCP+TLS handshake, and every
+ * call has a connect, pool-acquire and response timeout, so a hung provider cannot pin request
+ * threads. Each destination is tuned under app.http.&lt;name&gt;.*: connect-timeout-ms,
+ * read-timeout-ms, acquire-timeout-ms, max-connections, max-per-route.
+ */
+@Component
+public class OutboundHttpClients implements DisposableBean {
+
+    public static final String GRAPH = "graph";
+    public static final String AAD = "aad";
+    public static final String MOCKPAY = "mockpay";
+
+    private final Map<String, Destination> destinations = new LinkedHashMap<>();
+
+    public OutboundHttpClients(Environment env) {
+        register(env, GRAPH, 2_000, 10_000, 50);
+        register(env, AAD, 2_000, 5_000, 10);
+        register(env, MOCKPAY, 2_000, env.getProperty("mockpay.timeoutMs", Integer.class, 5_000), 50);
+    }
+
+    /** RestTemplate backed by the destination's pool. Cheap; callers keep the instance. */
+    public RestTemplate restTemplate(String destination) {
+        Destination d = destinations.get(destination);
+        if (d == null) {
+            throw new IllegalArgumentException("Unknown HTTP destination: " + destination);
+        }
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(d.client()));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        destinations.forEach((name, d) -> {
+            PoolStats total = d.pool().getTotalStats();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("leased", total.getLeased());
+            m.put("available", total.getAvailable());
+            m.put("pending", total.getPending());
+            m.put("max", total.getMax());
+            m.put("routes", d.pool().getRoutes().size());
+            out.put(name, m);
+        });
+        return out;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        for (Destination d : destinations.values()) {
+            d.client().close();
+        }
+    }
+
+    private void register(Environment env, String name, int connectMs, int readMs, int maxConnections) {
+        String prefix = "app.http." + name + ".";
+        int connect = env.getProperty(prefix + "connect-timeout-ms", Integer.class, connectMs);
+        int read = env.getProperty(prefix + "read-timeout-ms", Integer.class, readMs);
+        int acquire = env.getProperty(prefix + "acquire-timeout-ms", Integer.class, 2_000);
+        int max = env.getProperty(prefix + "max-connections", Integer.class, maxConnections);
+        int perRoute = env.getProperty(prefix + "max-per-route", Integer.class, max);
+
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(max)
+                .setMaxConnPerRoute(perRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connect))
+                        .setSocketTimeout(Timeout.ofMilliseconds(read))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+
+        CloseableHttpClient client = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(acquire))
+                        .setResponseTimeout(Timeout.ofMilliseconds(read))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .disableAutomaticRetries() // callers own retry policy (outbox, batch sender)
+                .build();
+
+        destinations.put(name, new Destination(pool, client));
+    }
+
+    private record Destination(PoolingHttpClientConnectionManager pool, CloseableHttpClient client) {}
+}
@@ -0,0 +1,158 @@
+package com.maxcogito.auth.controller;
+
+import com.maxcogito.auth.config.OutboundHttpClients;
+import com.maxcogito.auth.mfa.MfaChallengeStore;
+import com.maxcogito.auth.ms.AadTokenCache;
+import com.maxcogito.auth.security.BcryptCalibration;
+import com.maxcogito.auth.security.BoundedPasswordEncoder;
+import com.maxcogito.auth.security.JwtKeyRing;
+import com.maxcogito.auth.security.LoginThrottle;
+import com.maxcogito.auth.security.PasswordUpgradeService;
+import com.maxcogito.auth.security.TokenEpochRegistry;
+import com.maxcogito.auth.security.VerifiedClaimsCache;
+import com.maxcogito.auth.service.GraphBatchMailSender;
+import com.maxcogito.auth.service.OutboundMessageDispatcher;
+import com.maxcogito.auth.service.PaymentWebhookInbox;
+import com.maxcogito.auth.service.RefreshTokenPartitions;
+import com.maxcogito.auth.service.RefreshTokenUsageBuffer;
+import com.maxcogito.auth.service.SubscriptionExpiryEngine;
+import com.maxcogito.auth.service.TokenRetentionEngine;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lightweight runtime counters for the auth hot paths (no actuator on the classpath).
+ */
+@RestController
+@RequestMapping("/api/v1/admin/metrics")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminMetricsController {
+
+    private final VerifiedClaimsCache claimsCache;
+    private final TokenEpochRegistry tokenEpochs;
+    private final JwtKeyRing keyRing;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final BcryptCalibration bcryptCalibration;
+    private final PasswordUpgradeService passwordUpgrades;
+    private final LoginThrottle loginThrottle;
+    private final MfaChallengeStore mfaChallenges;
+    private final OutboundMessageDispatcher outbox;
+    private final GraphBatchMailSender graphBatch;
+    private final OutboundHttpClients httpClients;
+    private final AadTokenCache aadTokens;
+    private final PaymentWebhookInbox paymentWebhooks;
+    private final SubscriptionExpiryEngine subscriptionExpiry;
+    private final RefreshTokenUsageBuffer refreshTokenUsage;
+    private final RefreshTokenPartitions refreshTokenPartitions;
+    private final TokenRetentionEngine tokenRetention;
+
+    public AdminMetricsController(VerifiedClaimsCache claimsCache, TokenEpochRegistry tokenEpochs,
+                                  JwtKeyRing keyRing, BoundedPasswordEncoder passwordEncoder,
+                                  BcryptCalibration bcryptCalibration, PasswordUpgradeService passwordUpgrades,
+                                  LoginThrottle loginThrottle, MfaChallengeStore mfaChallenges,
+                                  OutboundMessageDispatcher outbox, GraphBatchMailSender graphBatch,
+                                  OutboundHttpClients httpClients, AadTokenCache aadTokens,
+                                  PaymentWebhookInbox paymentWebhooks, SubscriptionExpiryEngine subscriptionExpiry,
+                                  RefreshTokenUsageBuffer refreshTokenUsage,
+                                  RefreshTokenPartitions refreshTokenPartitions,
+                                  TokenRetentionEngine tokenRetention) {
+        this.claimsCache = claimsCache;
+        this.tokenEpochs = tokenEpochs;
+        this.keyRing = keyRing;
+        this.passwordEncoder = passwordEncoder;
+        this.bcryptCalibration = bcryptCalibration;
+        this.passwordUpgrades = passwordUpgrades;
+        this.loginThrottle = loginThrottle;
+        this.mfaChallenges = mfaChallenges;
+        this.outbox = outbox;
+        this.graphBatch = graphBatch;
+        this.httpClients = httpClients;
+        this.aadTokens = aadTokens;
+        this.paymentWebhooks = paymentWebhooks;
+        this.subscriptionExpiry = subscriptionExpiry;
+        this.refreshTokenUsage = refreshTokenUsage;
+        this.refreshTokenPartitions = refreshTokenPartitions;
+        this.tokenRetention = tokenRetention;
+    }
+
+    @GetMapping("/jwt-claims-cache")
+    public ResponseEntity<Map<String, Object>> jwtClaimsCache() {
+        return ResponseEntity.ok(claimsCache.stats());
+    }
+
+    @GetMapping("/token-epochs")
+    public ResponseEntity<Map<String, Object>> tokenEpochs() {
+        return ResponseEntity.ok(tokenEpochs.stats());
+    }
+
+    @GetMapping("/jwt-keys")
+    public ResponseEntity<Map<String, Object>> jwtKeys() {
+        return ResponseEntity.ok(keyRing.stats());
+    }
+
+    @GetMapping("/password-hashing")
+    public ResponseEntity<Map<String, Object>> passwordHashing() {
+        Map<String, Object> out = new LinkedHashMap<>(passwordEncoder.stats());
+        out.put("bcrypt", bcryptCalibration.stats());
+        out.put("rehashOnLogin", passwordUpgrades.stats());
+        return ResponseEntity.ok(out);
+    }
+
+    @GetMapping("/login-throttle")
+    public ResponseEntity<Map<String, Object>> loginThrottle() {
+        return ResponseEntity.ok(loginThrottle.stats());
+    }
+
+    @GetMapping("/mfa-challenges")
+    public ResponseEntity<Map<String, Object>> mfaChallenges() {
+        return ResponseEntity.ok(mfaChallenges.stats());
+    }
+
+    @GetMapping("/outbox")
+    public ResponseEntity<Map<String, Object>> outbox() {
+        Map<String, Object> out = new LinkedHashMap<>(outbox.stats());
+        out.put("graphBatch", graphBatch.stats());
+        return ResponseEntity.ok(out);
+    }
+
+    @GetMapping("/http-clients")
+    public ResponseEntity<Map<String, Object>> httpClients() {
+        return ResponseEntity.ok(httpClients.stats());
+    }
+
+    @GetMapping("/aad-tokens")
+    public ResponseEntity<Map<String, Object>> aadTokens() {
+        return ResponseEntity.ok(aadTokens.stats());
+    }
+
+    @GetMapping("/payment-webhooks")
+    public ResponseEntity<Map<String, Object>> paymentWebhooks() {
+        return ResponseEntity.ok(paymentWebhooks.stats());
+    }
+
+    @GetMapping("/subscription-expiry")
+    public ResponseEntity<Map<String, Object>> subscriptionExpiry() {
+        return ResponseEntity.ok(subscriptionExpiry.stats());
+    }
+
+    @GetMapping("/refresh-token-usage")
+    public ResponseEntity<Map<String, Object>> refreshTokenUsage() {
+        return ResponseEntity.ok(refreshTokenUsage.stats());
+    }
+
+    @GetMapping("/refresh-token-partitions")
+    public ResponseEntity<Map<String, Object>> refreshTokenPartitions() {
+        return ResponseEntity.ok(refreshTokenPartitions.stats());
+    }
+
+    @GetMapping("/token-retention")
+    public ResponseEntity<Map<String, Object>> tokenRetention() {
+        return ResponseEntity.ok(tokenRetention.stats());
+    }
+}
@@ -0,0 +1,56 @@
+package com.maxcogito.auth.controller;
+
+import com.maxcogito.auth.repo.OutboundMessageRepository;
+import com.maxcogito.auth.service.OutboundMessageDispatcher;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Dead-lettered email/SMS: list them and put them back in the queue once the provider is fixed.
+ */
+@RestController
+@RequestMapping("/api/v1/admin/outbox")
+@PreAuthorize("hasRole('ADMIN')")
+public class AdminOutboxController {
+
+    private final OutboundMessageRepository repo;
+    private final OutboundMessageDispatcher dispatcher;
+
+    public AdminOutboxController(OutboundMessageRepository repo, OutboundMessageDispatcher dispatcher) {
+        this.repo = repo;
+        this.dispatcher = dispatcher;
+    }
+
+    @GetMapping("/dead")
+    public ResponseEntity<List<Map<String, Object>>> deadLetters(@RequestParam(name = "limit", defaultValue = "100") int limit) {
+        List<Map<String, Object>> out = repo.findDeadLetters(Math.min(Math.max(limit, 1), 1000)).stream()
+                .map(row -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("id", row[0]);
+                    m.put("channel", row[1]);
+                    m.put("recipient", row[2]);
+                    m.put("attempts", row[3]);
+                    m.put("lastError", row[4]);
+                    m.put("createdAt", row[5]);
+                    return m;
+                })
+                .toList();
+        return ResponseEntity.ok(out);
+    }
+
+    @PostMapping("/dead/{id}/requeue")
+    public ResponseEntity<Map<String, Integer>> requeue(@PathVariable UUID id) {
+        int requeued = repo.requeueDead(id, Instant.now());
+        if (requeued > 0) {
+            dispatcher.wakeUp();
+        }
+        return ResponseEntity.ok(Map.of("requeued", requeued));
+    }
+}
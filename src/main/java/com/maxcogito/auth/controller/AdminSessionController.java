@@ -58,9 +58,7 @@ public class AdminSessionController {
 
     @DeleteMapping("/sessions/revoked/tokenById")
     public ResponseEntity<Void> revokeUserTokenById(@RequestParam("id") UUID id) {
-        Instant now = Instant.now();
-        refreshTokenRepository.revokeAllForUser(id, now);
-        refreshTokenRepository.deleteRevokedOrExpired(now);
+        adminSessionService.revokeAndPurgeTokensForUser(id);
         return ResponseEntity.ok().build();
     }
 }
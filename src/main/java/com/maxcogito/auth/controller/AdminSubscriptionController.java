@@ -1,8 +1,10 @@
 package com.maxcogito.auth.controller;
 
 import com.maxcogito.auth.domain.SubscriptionStatus;
+import com.maxcogito.auth.dto.BulkSubscriptionDecisionRequest;
 import com.maxcogito.auth.dto.SubscriptionViewDto;
 import com.maxcogito.auth.service.SubscriptionService;
+import jakarta.validation.Valid;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
@@ -61,5 +63,24 @@ public class AdminSubscriptionController {
         String adminUsername = auth.getName();
         return subscriptionService.reject(id, adminUsername, notes);
     }
-}
 
+    /**
+     * Approve many subscriptions at once:
+     *   POST /api/v1/admin/subscriptions/bulk/approve  {"ids": [1, 2, 3]}
+     */
+    @PostMapping("/bulk/approve")
+    public SubscriptionService.BulkDecision approveAll(@Valid @RequestBody BulkSubscriptionDecisionRequest req,
+                                                      Authentication auth) {
+        return subscriptionService.approveAll(req.ids(), auth.getName());
+    }
+
+    /**
+     * Reject many subscriptions at once:
+     *   POST /api/v1/admin/subscriptions/bulk/reject  {"ids": [1, 2, 3], "notes": "..."}
+     */
+    @PostMapping("/bulk/reject")
+    public SubscriptionService.BulkDecision rejectAll(@Valid @RequestBody BulkSubscriptionDecisionRequest req,
+                                                     Authentication auth) {
+        return subscriptionService.rejectAll(req.ids(), auth.getName(), req.notes());
+    }
+}
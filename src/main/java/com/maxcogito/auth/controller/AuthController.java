@@ -7,9 +7,11 @@ import com.maxcogito.auth.dto.*;
 import com.maxcogito.auth.errors.UnauthorizedException;
 import com.maxcogito.auth.google.GoogleTokenVerifier;
 import com.maxcogito.auth.security.JwtService;
+import com.maxcogito.auth.security.LoginThrottle;
 import com.maxcogito.auth.security.UserDetailsImpl;
 import com.maxcogito.auth.security.UserDetailsServiceImpl;
 import com.maxcogito.auth.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,6 +50,7 @@ public class AuthController {
     private final com.maxcogito.auth.service.RefreshTokenService refreshTokenService;
     private final com.maxcogito.auth.service.VerificationService verificationService;
     private final com.maxcogito.auth.config.MfaProperties mfaProperties;
+    private final LoginThrottle loginThrottle;
 
     public AuthController(AuthenticationManager authenticationManager,
                           UserService userService,
@@ -56,7 +59,8 @@ public class AuthController {
                           UserDetailsServiceImpl userDetailsService,
                           com.maxcogito.auth.config.MfaProperties mfaProperties,
                           com.maxcogito.auth.service.RefreshTokenService refreshTokenService,
-                          com.maxcogito.auth.service.VerificationService verificationService) {
+                          com.maxcogito.auth.service.VerificationService verificationService,
+                          LoginThrottle loginThrottle) {
         this.authenticationManager = authenticationManager;
         this.userService = userService;
         this.jwtService = jwtService;
@@ -65,6 +69,7 @@ public class AuthController {
         this.refreshTokenService = refreshTokenService;
         this.verificationService = verificationService;
         this.mfaProperties = mfaProperties;
+        this.loginThrottle = loginThrottle;
     }
 
     @PostMapping("/register/user")
@@ -172,7 +177,8 @@ public class AuthController {
     }
 
     @PostMapping("/service/login")
-    public ResponseEntity<TokenPairResponseDto> servicelogin(@Valid @RequestBody LoginRequest req) {
+    public ResponseEntity<TokenPairResponseDto> servicelogin(@Valid @RequestBody LoginRequest req, HttpServletRequest request) {
+        loginThrottle.check(req.getUsernameOrEmail(), request);
         Authentication auth = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(req.getUsernameOrEmail(), req.getPassword())
         );
@@ -189,8 +195,9 @@ public class AuthController {
 
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest req) {
+    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest req, HttpServletRequest request) {
         log.info("Received login request: {}", req.getUsernameOrEmail());
+        loginThrottle.check(req.getUsernameOrEmail(), request);
         Authentication auth = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(req.getUsernameOrEmail(), req.getPassword()));
         SecurityContextHolder.getContext().setAuthentication(auth);
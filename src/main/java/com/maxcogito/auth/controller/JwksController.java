@@ -0,0 +1,39 @@
+package com.maxcogito.auth.controller;
+
+import com.maxcogito.auth.security.JwtKeyRing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Public keys for verifying our ES256 access tokens locally (RFC 7517 JWK Set).
+ * Cacheable by consumers and proxies; conditional GETs with If-None-Match get a 304.
+ */
+@RestController
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+    private final CacheControl cacheControl;
+
+    public JwksController(JwtKeyRing keyRing,
+                          @Value("${app.jwt.jwks.max-age-seconds:300}") long maxAgeSeconds) {
+        this.keyRing = keyRing;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds))
+                .cachePublic()
+                .staleWhileRevalidate(Duration.ofSeconds(maxAgeSeconds))
+                .staleIfError(Duration.ofDays(1));
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<Map<String, Object>> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .eTag(keyRing.jwksEtag())
+                .body(Map.of("keys", keyRing.jwks()));
+    }
+}
@@ -2,17 +2,21 @@ package com.maxcogito.auth.controller;
 
 
 import com.maxcogito.auth.config.MfaProperties;
+import com.maxcogito.auth.domain.MfaMethod;
 import com.maxcogito.auth.domain.Role;
 import com.maxcogito.auth.domain.User;
 import com.maxcogito.auth.dto.TokenPairResponse;
 import com.maxcogito.auth.mfa.MfaService;
 import com.maxcogito.auth.security.JwtService;
+import com.maxcogito.auth.security.LoginThrottle;
 import com.maxcogito.auth.service.RefreshTokenService;
 import com.maxcogito.auth.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.constraints.NotBlank;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -39,24 +43,28 @@ public class MfaController {
     private final JwtService jwtService;
     private final MfaProperties mfaProps;
     private final RefreshTokenService refreshTokenService; // <-- NEW
+    private final LoginThrottle loginThrottle;
 
     public MfaController(AuthenticationManager authManager,
                          UserService userService,
                          MfaService mfaService,
                          JwtService jwtService,
                          MfaProperties mfaProps,
-                         RefreshTokenService refreshTokenService) { // <-- NEW
+                         RefreshTokenService refreshTokenService, // <-- NEW
+                         LoginThrottle loginThrottle) {
         this.authManager = authManager;
         this.userService = userService;
         this.mfaService = mfaService;
         this.jwtService = jwtService;
         this.mfaProps = mfaProps;
         this.refreshTokenService = refreshTokenService; // <-- NEW
+        this.loginThrottle = loginThrottle;
     }
 
     // ------------------ STEP 1: PRIMARY LOGIN (starts MFA if required) ------------------
     @PostMapping("/mfalogin")
-    public ResponseEntity<?> login(@RequestBody LoginRequest req) {
+    public ResponseEntity<?> login(@RequestBody LoginRequest req, HttpServletRequest request) {
+        loginThrottle.check(req.username(), request);
         Authentication auth = authManager.authenticate(
                 new UsernamePasswordAuthenticationToken(req.username(), req.password())
         );
@@ -144,13 +152,7 @@ public class MfaController {
         var auth = SecurityContextHolder.getContext().getAuthentication();
         if (auth == null || !auth.isAuthenticated()) return ResponseEntity.status(401).build();
 
-        User user;
-        Object principal = auth.getPrincipal();
-        if (principal instanceof com.maxcogito.auth.security.UserDetailsImpl udi) {
-            user = userService.loadDomainUserById(udi.getId());
-        } else {
-            user = userService.loadDomainUserByUsernameOrEmail(auth.getName());
-        }
+        User user = userService.loadDomainUser(auth);
 
         var ch = mfaService.startLoginChallenge(user);
 
@@ -168,9 +170,29 @@ public class MfaController {
         ));
     }
 
+    // ------------------ TOTP (authenticator app) enrollment ------------------
+    @PostMapping("/mfa/totp/enroll")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<MfaService.TotpEnrollment> enrollTotp(Authentication auth,
+                                                                @RequestBody(required = false) TotpEnrollRequest req) {
+        User user = userService.loadDomainUser(auth);
+        return ResponseEntity.ok(mfaService.startTotpEnrollment(user,
+                req != null ? req.challengeId() : null, req != null ? req.currentCode() : null));
+    }
+
+    @PostMapping("/mfa/totp/confirm")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> confirmTotp(Authentication auth, @RequestBody TotpConfirmRequest req) {
+        User user = mfaService.confirmTotpEnrollment(userService.loadDomainUser(auth), req.code());
+        return ResponseEntity.ok(Map.of("mfaMethod", user.getMfaMethod().name(), "enrolled", true));
+    }
+
     // ------------------ helpers & DTOs ------------------
 
     private String maskDestination(User user) {
+        if (user.getMfaMethod() == MfaMethod.TOTP && user.getTotpConfirmedAt() != null) {
+            return "authenticator app";
+        }
         if (user.getEmail() != null && !user.getEmail().isBlank()) {
             var e = user.getEmail();
             int at = e.indexOf('@');
@@ -185,6 +207,8 @@ public class MfaController {
     public record LoginRequest(@NotBlank String username, @NotBlank String password) {}
     public record VerifyRequest(@NotBlank UUID challengeId, @NotBlank String code) {}
     public record ResendRequest(@NotBlank UUID challengeId) {}
+    public record TotpEnrollRequest(UUID challengeId, String currentCode) {}
+    public record TotpConfirmRequest(@NotBlank String code) {}
 
     public record MfaStartResponse(
             UUID challengeId,
@@ -3,6 +3,7 @@ package com.maxcogito.auth.controller;
 
 import com.maxcogito.auth.dto.*;
 import com.maxcogito.auth.service.PaymentService;
+import com.maxcogito.auth.service.PaymentWebhookInbox;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -13,9 +14,11 @@ import org.springframework.web.bind.annotation.*;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentWebhookInbox webhookInbox;
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, PaymentWebhookInbox webhookInbox) {
         this.paymentService = paymentService;
+        this.webhookInbox = webhookInbox;
     }
 
     /**
@@ -45,13 +48,14 @@ public class PaymentController {
     /**
      * Webhook endpoint called by mock-payment-gateway.
      * This is open (no JWT required) per SecurityConfig.
+     * Acknowledged once the event is stored; it is applied asynchronously by PaymentWebhookInbox.
      */
     @PostMapping("/webhook/mock")
     public ResponseEntity<Void> mockWebhook(@RequestBody MockPaymentWebhookDto payload) {
-        boolean success = "succeeded".equalsIgnoreCase(payload.getStatus());
-        paymentService.handleMockWebhook(
+        webhookInbox.accept(
+                payload.getProvider(),
                 payload.getSessionId(),
-                success,
+                payload.getStatus(),
                 payload.getSubscriptionIds()
         );
         return ResponseEntity.ok().build();
@@ -0,0 +1,50 @@
+package com.maxcogito.auth.domain;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "jwt_signing_key")
+public class JwtSigningKey {
+
+    @Id
+    @Column(name = "kid", length = 64)
+    private String kid;
+
+    @Column(name = "alg", nullable = false, length = 16)
+    private String alg; // e.g. "ES256"
+
+    @Column(name = "private_key_enc", nullable = false, columnDefinition = "text")
+    private String privateKeyEnc; // PKCS#8, encrypted with SecretCipher
+
+    @Column(name = "public_key", nullable = false, columnDefinition = "text")
+    private String publicKey; // X.509 SubjectPublicKeyInfo, base64
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "retired_at")
+    private Instant retiredAt; // null while the key may still sign
+
+    public JwtSigningKey() {
+    }
+
+    public String getKid() { return kid; }
+    public void setKid(String kid) { this.kid = kid; }
+
+    public String getAlg() { return alg; }
+    public void setAlg(String alg) { this.alg = alg; }
+
+    public String getPrivateKeyEnc() { return privateKeyEnc; }
+    public void setPrivateKeyEnc(String privateKeyEnc) { this.privateKeyEnc = privateKeyEnc; }
+
+    public String getPublicKey() { return publicKey; }
+    public void setPublicKey(String publicKey) { this.publicKey = publicKey; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getRetiredAt() { return retiredAt; }
+    public void setRetiredAt(Instant retiredAt) { this.retiredAt = retiredAt; }
+}
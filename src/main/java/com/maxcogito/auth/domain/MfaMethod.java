@@ -1,5 +1,5 @@
 package com.maxcogito.auth.domain;
 
 public enum MfaMethod {
-    EMAIL_OTP, SMS_OTP /*, TOTP (later) */
+    EMAIL_OTP, SMS_OTP, TOTP
 }
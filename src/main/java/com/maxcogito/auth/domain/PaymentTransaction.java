@@ -8,7 +8,9 @@ import java.time.Instant;
 import java.util.List;
 
 @Entity
-@Table(name = "payment_transaction")
+@Table(name = "payment_transaction", indexes = {
+        @Index(name = "idx_payment_transaction_provider_id", columnList = "provider_id"),
+        @Index(name = "idx_payment_transaction_status_created", columnList = "status, created_at")})
 public class PaymentTransaction {
 
     @Id
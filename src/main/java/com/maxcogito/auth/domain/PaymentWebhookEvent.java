@@ -0,0 +1,104 @@
+package com.maxcogito.auth.domain;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/** A received payment webhook; rows are inserted natively (see PaymentWebhookEventRepository#insertIfAbsent). */
+@Entity
+@Table(name = "payment_webhook_event")
+public class PaymentWebhookEvent {
+
+    public enum Status { PENDING, PROCESSING, DONE, DEAD }
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "provider", nullable = false, length = 32)
+    private String provider;
+
+    @Column(name = "session_id", nullable = false)
+    private String sessionId;
+
+    @Column(name = "event", nullable = false, length = 32)
+    private String event; // succeeded | failed
+
+    @Column(name = "subscription_ids", length = 2000)
+    private String subscriptionIds;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false, updatable = false)
+    private Instant receivedAt = Instant.now();
+
+    @Column(name = "processed_at")
+    private Instant processedAt;
+
+    public PaymentWebhookEvent() {
+    }
+
+    public boolean isSuccess() {
+        return "succeeded".equals(event);
+    }
+
+    public List<Long> subscriptionIdList() {
+        if (subscriptionIds == null || subscriptionIds.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(subscriptionIds.split(",")).map(String::trim).map(Long::valueOf).toList();
+    }
+
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+
+    public String getProvider() { return provider; }
+    public void setProvider(String provider) { this.provider = provider; }
+
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getEvent() { return event; }
+    public void setEvent(String event) { this.event = event; }
+
+    public String getSubscriptionIds() { return subscriptionIds; }
+    public void setSubscriptionIds(String subscriptionIds) { this.subscriptionIds = subscriptionIds; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public Instant getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(Instant nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public Instant getLockedUntil() { return lockedUntil; }
+    public void setLockedUntil(Instant lockedUntil) { this.lockedUntil = lockedUntil; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public Instant getReceivedAt() { return receivedAt; }
+    public void setReceivedAt(Instant receivedAt) { this.receivedAt = receivedAt; }
+
+    public Instant getProcessedAt() { return processedAt; }
+    public void setProcessedAt(Instant processedAt) { this.processedAt = processedAt; }
+}
@@ -1,14 +1,23 @@
 package com.maxcogito.auth.domain;
 
 import jakarta.persistence.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.UUID;
 @Entity
 @Table(
         name = "refresh_token",
-        indexes = { @Index(columnList = "token", unique = true) }
+        // partitioned by created_at (V15): a unique index would have to include it
+        indexes = { @Index(name = "idx_refresh_token_token", columnList = "token") }
 )
 public class RefreshToken {
+    /**
+     * Upper bound on expires_at - created_at. Queries on live tokens add
+     * {@code created_at > now - MAX_LIFETIME} so only recent partitions are scanned, and a
+     * partition older than this holds nothing but expired tokens.
+     */
+    public static final Duration MAX_LIFETIME = Duration.ofDays(30);
+
     @Id @GeneratedValue
     private UUID id;
 
@@ -16,7 +25,7 @@ public class RefreshToken {
     @JoinColumn(name = "user_id", nullable = false) // explicit FK column name
     private User user;
 
-    @Column(name = "token", nullable = false, unique = true, length = 128)
+    @Column(name = "token", nullable = false, length = 128)
     private String token;
 
     @Column(name = "expires_at", nullable = false)
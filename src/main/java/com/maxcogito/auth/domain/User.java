@@ -63,11 +63,33 @@ public class User {
 
     @Enumerated(EnumType.STRING)
     @Column(name = "mfa_method")
-    private MfaMethod mfaMethod; // EMAIL_OTP or SMS_OTP
+    private MfaMethod mfaMethod; // EMAIL_OTP, SMS_OTP or TOTP
+
+    // AES-GCM encrypted (SecretCipher); the active secret, moved here from totpPendingSecretEnc on confirm
+    @Column(name = "totp_secret_enc", columnDefinition = "text")
+    private String totpSecretEnc;
+
+    @Column(name = "totp_confirmed_at")
+    private Instant totpConfirmedAt;
+
+    // Secret from an enrollment not yet confirmed by a first valid code; same encryption
+    @Column(name = "totp_pending_secret_enc", columnDefinition = "text")
+    private String totpPendingSecretEnc;
+
+    // Only ever changed by UserRepository.advanceTotpStep (conditional update), never by entity saves
+    @Column(name = "totp_last_step", nullable = false, updatable = false)
+    private long totpLastStep = 0;
 
     @Column(name = "phone_number")
     private String phoneNumber; // already in your table; ensure mapped
 
+    // Only ever changed by UserRepository.bumpTokenEpoch (native update), never by entity saves
+    @Column(name = "token_epoch", nullable = false, updatable = false)
+    private long tokenEpoch = 0;
+
+    @Column(name = "token_epoch_changed_at", updatable = false)
+    private Instant tokenEpochChangedAt;
+
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(name = "user_roles",
             joinColumns = @JoinColumn(name = "user_id"),
@@ -187,6 +209,42 @@ public class User {
         this.mfaEnforcedAt = mfaEnforcedAt;
     }
 
+    public String getTotpSecretEnc() {
+        return totpSecretEnc;
+    }
+
+    public void setTotpSecretEnc(String totpSecretEnc) {
+        this.totpSecretEnc = totpSecretEnc;
+    }
+
+    public Instant getTotpConfirmedAt() {
+        return totpConfirmedAt;
+    }
+
+    public void setTotpConfirmedAt(Instant totpConfirmedAt) {
+        this.totpConfirmedAt = totpConfirmedAt;
+    }
+
+    public String getTotpPendingSecretEnc() {
+        return totpPendingSecretEnc;
+    }
+
+    public void setTotpPendingSecretEnc(String totpPendingSecretEnc) {
+        this.totpPendingSecretEnc = totpPendingSecretEnc;
+    }
+
+    public long getTotpLastStep() {
+        return totpLastStep;
+    }
+
+    public long getTokenEpoch() {
+        return tokenEpoch;
+    }
+
+    public Instant getTokenEpochChangedAt() {
+        return tokenEpochChangedAt;
+    }
+
     public Instant getLastLoginAt() {
         return lastLoginAt;
     }
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "user_subscription")
+@Table(name = "user_subscription", indexes = {
+        @Index(name = "idx_user_subscription_status_valid_until", columnList = "status, valid_until, id"),
+        @Index(name = "idx_user_subscription_user_kind", columnList = "user_id, service_kind")})
 public class UserSubscription {
 
     @Id
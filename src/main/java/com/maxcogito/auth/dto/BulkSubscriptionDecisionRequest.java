@@ -0,0 +1,10 @@
+package com.maxcogito.auth.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/** Body of the admin bulk approve/reject calls; notes are only used when rejecting. */
+public record BulkSubscriptionDecisionRequest(@NotEmpty @Size(max = 1000) List<Long> ids, String notes) {
+}
@@ -0,0 +1,13 @@
+package com.maxcogito.auth.errors;
+
+/** Too many login attempts for this username or client; retry after the given delay (HTTP 429). */
+public class LoginThrottledException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
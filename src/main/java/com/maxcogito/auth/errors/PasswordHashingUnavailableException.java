@@ -0,0 +1,16 @@
+package com.maxcogito.auth.errors;
+
+/**
+ * The password-hashing pool is saturated; the request should be retried later (HTTP 503).
+ * Deliberately not an AuthenticationException, so it is not reported as bad credentials.
+ */
+public class PasswordHashingUnavailableException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public PasswordHashingUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,38 @@
+package com.maxcogito.auth.mfa;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Original scheme: the code hashed with the password encoder. Kept so challenges created
+ * before the switch to HMAC still verify until they expire; select it with app.mfa.otp-hash=bcrypt.
+ */
+@Component
+public class BcryptOtpHashStrategy implements OtpHashStrategy {
+
+    private final PasswordEncoder encoder;
+
+    public BcryptOtpHashStrategy(PasswordEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    @Override
+    public String id() {
+        return "bcrypt";
+    }
+
+    @Override
+    public String hash(String code) {
+        return encoder.encode(code);
+    }
+
+    @Override
+    public boolean handles(String stored) {
+        return stored != null && stored.startsWith("$2");
+    }
+
+    @Override
+    public boolean matches(String code, String stored) {
+        return encoder.matches(code, stored);
+    }
+}
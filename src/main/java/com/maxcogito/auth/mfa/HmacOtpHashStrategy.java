@@ -0,0 +1,98 @@
+package com.maxcogito.auth.mfa;
+
+import io.jsonwebtoken.io.Decoders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * HMAC-SHA256 over a per-challenge salt and the code, stored as {@code hmac$<salt>$<mac>}.
+ *
+ * A 6-digit code is guarded by its TTL and attempt limit, not by hash cost, so a keyed MAC
+ * is enough: without the server key a leaked row cannot be brute-forced offline, and
+ * verifying takes microseconds instead of a BCrypt round.
+ */
+@Component
+public class HmacOtpHashStrategy implements OtpHashStrategy {
+
+    private static final String PREFIX = "hmac$";
+    private static final String ALG = "HmacSHA256";
+    private static final int SALT_BYTES = 16;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public HmacOtpHashStrategy(@Value("${app.mfa.hmac-key:}") String keyBase64,
+                               @Value("${app.jwt.secret}") String jwtSecretBase64) {
+        byte[] material = !keyBase64.isBlank()
+                ? Decoders.BASE64.decode(keyBase64)
+                : derive(Decoders.BASE64.decode(jwtSecretBase64));
+        this.key = new SecretKeySpec(material, ALG);
+    }
+
+    @Override
+    public String id() {
+        return "hmac";
+    }
+
+    @Override
+    public String hash(String code) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        return PREFIX + b64.encodeToString(salt) + "$" + b64.encodeToString(mac(salt, code));
+    }
+
+    @Override
+    public boolean handles(String stored) {
+        return stored != null && stored.startsWith(PREFIX);
+    }
+
+    @Override
+    public boolean matches(String code, String stored) {
+        if (code == null || !handles(stored)) {
+            return false;
+        }
+        int sep = stored.indexOf('$', PREFIX.length());
+        if (sep < 0) {
+            return false;
+        }
+        try {
+            Base64.Decoder b64 = Base64.getUrlDecoder();
+            byte[] salt = b64.decode(stored.substring(PREFIX.length(), sep));
+            byte[] expected = b64.decode(stored.substring(sep + 1));
+            return MessageDigest.isEqual(expected, mac(salt, code));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private byte[] mac(byte[] salt, String code) {
+        try {
+            Mac mac = Mac.getInstance(ALG); // not thread-safe; cheap to create
+            mac.init(key);
+            mac.update(salt);
+            return mac.doFinal(code.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    /** Separate key from the JWT secret so an OTP MAC can never be mistaken for a token signature. */
+    private static byte[] derive(byte[] material) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update("mfa-otp-hmac:v1".getBytes(StandardCharsets.US_ASCII));
+            return md.digest(material);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
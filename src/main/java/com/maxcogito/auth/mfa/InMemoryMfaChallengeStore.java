@@ -0,0 +1,276 @@
+package com.maxcogito.auth.mfa;
+
+import com.maxcogito.auth.domain.MfaChallenge;
+import com.maxcogito.auth.domain.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-local challenge store: a login with MFA costs no synchronous database writes.
+ *
+ * Challenges are held in memory until they expire (or are consumed) and attempts are counted
+ * with an AtomicInteger, so concurrent guesses cannot share an attempt. Every change is queued
+ * and upserted into mfa_challenge in JDBC batches for audit; the table is never read back.
+ *
+ * A challenge is only known to the node that issued it, so multi-node deployments need sticky
+ * routing for /mfa/verify and /mfa/resend (or the jpa store). A restart drops pending challenges;
+ * users request a new code.
+ */
+@Component
+@ConditionalOnProperty(name = "app.mfa.challenge-store", havingValue = "memory")
+public class InMemoryMfaChallengeStore implements MfaChallengeStore, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryMfaChallengeStore.class);
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO mfa_challenge (id, user_id, code_hash, expires_at, attempts, purpose, created_at, consumed_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (id) DO UPDATE
+               SET attempts = GREATEST(mfa_challenge.attempts, EXCLUDED.attempts),
+                   consumed_at = COALESCE(mfa_challenge.consumed_at, EXCLUDED.consumed_at)
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+    private final int maxEntries;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<UUID, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UUID> latestByUser = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<UUID> dirty;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder consumed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder auditDropped = new LongAdder();
+
+    public InMemoryMfaChallengeStore(JdbcTemplate jdbc,
+                                     Clock clock,
+                                     @Value("${app.mfa.memory-store.max-entries:100000}") int maxEntries,
+                                     @Value("${app.mfa.memory-store.audit-queue-capacity:50000}") int auditQueueCapacity,
+                                     @Value("${app.mfa.memory-store.batch-size:500}") int batchSize) {
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.maxEntries = maxEntries;
+        this.batchSize = batchSize;
+        this.dirty = new LinkedBlockingQueue<>(auditQueueCapacity);
+    }
+
+    @Override
+    public Optional<MfaChallenge> findLatest(User user, String purpose) {
+        UUID id = latestByUser.get(latestKey(user.getId(), purpose));
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public MfaChallenge create(MfaChallenge challenge) {
+        if (byId.size() >= maxEntries) {
+            evictExpired();
+            if (byId.size() >= maxEntries) {
+                throw new IllegalStateException("Too many pending MFA challenges");
+            }
+        }
+        challenge.setId(UUID.randomUUID());
+        if (challenge.getCreatedAt() == null) {
+            challenge.setCreatedAt(Instant.now(clock));
+        }
+        Entry e = new Entry(challenge.getId(), challenge.getUser(), challenge.getCodeHash(), challenge.getPurpose(),
+                challenge.getCreatedAt(), challenge.getExpiresAt(), challenge.getAttempts());
+        byId.put(e.id, e);
+        latestByUser.put(latestKey(e.user.getId(), e.purpose), e.id);
+        created.increment();
+        markDirty(e.id);
+        return e.toChallenge();
+    }
+
+    @Override
+    public Optional<MfaChallenge> findById(UUID id) {
+        Entry e = byId.get(id);
+        if (e == null || e.consumedAt.get() != null) {
+            return Optional.empty();
+        }
+        return Optional.of(e.toChallenge());
+    }
+
+    @Override
+    public int recordAttempt(MfaChallenge challenge, int maxAttempts) {
+        Entry e = byId.get(challenge.getId());
+        if (e == null) {
+            throw new IllegalArgumentException("Invalid challenge");
+        }
+        int before = e.attempts.getAndUpdate(a -> a < maxAttempts ? a + 1 : a);
+        if (before >= maxAttempts) {
+            return 0;
+        }
+        int attempts = before + 1;
+        challenge.setAttempts(attempts);
+        markDirty(e.id);
+        return attempts;
+    }
+
+    @Override
+    public boolean consume(MfaChallenge challenge) {
+        Entry e = byId.get(challenge.getId());
+        if (e == null || !e.consumedAt.compareAndSet(null, Instant.now(clock))) {
+            return false; // a concurrent verify got there first
+        }
+        consumed.increment();
+        markDirty(e.id);
+        // keep the entry until it has been flushed; the sweeper removes it
+        return true;
+    }
+
+    /** Drops expired and flushed-consumed challenges. */
+    @Scheduled(fixedDelayString = "${app.mfa.memory-store.sweep-ms:30000}")
+    public void evictExpired() {
+        Instant now = Instant.now(clock);
+        byId.values().removeIf(e -> {
+            boolean done = e.consumedAt.get() != null || now.isAfter(e.expiresAt);
+            if (done && e.flushedVersion == e.version.get()) {
+                if (e.consumedAt.get() == null) {
+                    expired.increment();
+                }
+                latestByUser.remove(latestKey(e.user.getId(), e.purpose), e.id);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${app.mfa.memory-store.flush-ms:2000}")
+    public void flush() {
+        List<UUID> ids = new ArrayList<>(batchSize);
+        while (dirty.drainTo(ids, batchSize) > 0) {
+            List<Object[]> rows = new ArrayList<>(ids.size());
+            List<Entry> entries = new ArrayList<>(ids.size());
+            List<Integer> versions = new ArrayList<>(ids.size());
+            for (UUID id : ids) {
+                Entry e = byId.get(id);
+                if (e == null) {
+                    continue;
+                }
+                e.queued.set(false);
+                // read the version first: a change racing with this snapshot re-queues the entry
+                versions.add(e.version.get());
+                entries.add(e);
+                rows.add(e.toRow());
+            }
+            try {
+                jdbc.batchUpdate(UPSERT_SQL, rows);
+                for (int i = 0; i < entries.size(); i++) {
+                    entries.get(i).flushedVersion = versions.get(i);
+                }
+                persisted.add(rows.size());
+            } catch (RuntimeException ex) {
+                // audit only: losing a batch must not affect logins
+                auditDropped.add(rows.size());
+                for (Entry e : entries) {
+                    e.flushedVersion = e.version.get(); // let the sweeper reclaim them
+                }
+                log.warn("MFA challenge audit flush failed ({} rows dropped): {}", rows.size(), ex.getMessage());
+            }
+            ids.clear();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("store", "memory");
+        out.put("pending", byId.size());
+        out.put("created", created.sum());
+        out.put("consumed", consumed.sum());
+        out.put("expired", expired.sum());
+        out.put("auditQueued", dirty.size());
+        out.put("auditPersisted", persisted.sum());
+        out.put("auditDropped", auditDropped.sum());
+        return out;
+    }
+
+    private void markDirty(UUID id) {
+        Entry e = byId.get(id);
+        if (e == null) {
+            return;
+        }
+        e.version.incrementAndGet();
+        if (e.queued.compareAndSet(false, true) && !dirty.offer(id)) {
+            e.queued.set(false);
+            e.flushedVersion = e.version.get();
+            auditDropped.increment();
+        }
+    }
+
+    private static String latestKey(UUID userId, String purpose) {
+        return userId + ":" + purpose;
+    }
+
+    private static final class Entry {
+        final UUID id;
+        final User user;
+        final String codeHash;
+        final String purpose;
+        final Instant createdAt;
+        final Instant expiresAt;
+        final AtomicInteger attempts;
+        final AtomicInteger version = new AtomicInteger();
+        final AtomicBoolean queued = new AtomicBoolean();
+        volatile int flushedVersion = -1;
+        final AtomicReference<Instant> consumedAt = new AtomicReference<>();
+
+        Entry(UUID id, User user, String codeHash, String purpose, Instant createdAt, Instant expiresAt, int attempts) {
+            this.id = id;
+            this.user = user;
+            this.codeHash = codeHash;
+            this.purpose = purpose;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+            this.attempts = new AtomicInteger(attempts);
+        }
+
+        MfaChallenge toChallenge() {
+            MfaChallenge ch = new MfaChallenge();
+            ch.setId(id);
+            ch.setUser(user);
+            ch.setCodeHash(codeHash);
+            ch.setPurpose(purpose);
+            ch.setCreatedAt(createdAt);
+            ch.setExpiresAt(expiresAt);
+            ch.setAttempts(attempts.get());
+            return ch;
+        }
+
+        Object[] toRow() {
+            Instant consumed = consumedAt.get();
+            return new Object[]{id, user.getId(), codeHash, Timestamp.from(expiresAt), attempts.get(), purpose,
+                    Timestamp.from(createdAt), consumed != null ? Timestamp.from(consumed) : null};
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.maxcogito.auth.mfa;
+
+import com.maxcogito.auth.domain.MfaChallenge;
+import com.maxcogito.auth.domain.User;
+import com.maxcogito.auth.repo.MfaChallengeRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/** Every challenge operation is a synchronous mfa_challenge read or write; works across nodes. */
+@Component
+@ConditionalOnProperty(name = "app.mfa.challenge-store", havingValue = "jpa", matchIfMissing = true)
+public class JpaMfaChallengeStore implements MfaChallengeStore {
+
+    private final MfaChallengeRepository repo;
+
+    public JpaMfaChallengeStore(MfaChallengeRepository repo) {
+        this.repo = repo;
+    }
+
+    @Override
+    public Optional<MfaChallenge> findLatest(User user, String purpose) {
+        return repo.findFirstByUserAndPurposeOrderByCreatedAtDesc(user, purpose);
+    }
+
+    @Override
+    public MfaChallenge create(MfaChallenge challenge) {
+        return repo.save(challenge);
+    }
+
+    @Override
+    public Optional<MfaChallenge> findById(UUID id) {
+        return repo.findById(id);
+    }
+
+    @Override
+    public int recordAttempt(MfaChallenge challenge, int maxAttempts) {
+        // one conditional UPDATE, so concurrent guesses on any node each use up an attempt; the
+        // entity is left alone so a later flush cannot write a stale count back
+        return repo.incrementAttempts(challenge.getId(), maxAttempts).orElse(0);
+    }
+
+    @Override
+    public boolean consume(MfaChallenge challenge) {
+        // repo.delete is a no-op for a row that is already gone; the row count says who won
+        return repo.deleteIfPresent(challenge.getId()) == 1;
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("store", "jpa");
+        return out;
+    }
+}
@@ -0,0 +1,34 @@
+package com.maxcogito.auth.mfa;
+
+import com.maxcogito.auth.domain.MfaChallenge;
+import com.maxcogito.auth.domain.User;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Where pending MFA challenges live between "code sent" and "code verified".
+ * Selected with app.mfa.challenge-store: {@code jpa} (default) or {@code memory}.
+ */
+public interface MfaChallengeStore {
+
+    /** Most recent challenge for this user and purpose, if still known to the store. */
+    Optional<MfaChallenge> findLatest(User user, String purpose);
+
+    /** Stores a new challenge and returns it with its id assigned. */
+    MfaChallenge create(MfaChallenge challenge);
+
+    Optional<MfaChallenge> findById(UUID id);
+
+    /**
+     * Atomically counts one verification attempt unless {@code maxAttempts} are already used up.
+     * Returns the attempt count including this one, or 0 if the attempt was refused.
+     */
+    int recordAttempt(MfaChallenge challenge, int maxAttempts);
+
+    /** The code was verified: the challenge can never be used again. False if it already was. */
+    boolean consume(MfaChallenge challenge);
+
+    Map<String, Object> stats();
+}
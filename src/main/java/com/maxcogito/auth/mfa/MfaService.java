@@ -4,81 +4,100 @@ import com.maxcogito.auth.config.MfaProperties;
 import com.maxcogito.auth.domain.MfaChallenge;
 import com.maxcogito.auth.domain.MfaMethod;
 import com.maxcogito.auth.domain.User;
-import com.maxcogito.auth.repo.MfaChallengeRepository;
-import com.maxcogito.auth.service.EmailService;
+import com.maxcogito.auth.service.OutboxService;
+import com.maxcogito.auth.service.RefreshTokenService;
 import com.maxcogito.auth.service.UserService;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.UUID;
 
 
 
 @Service
 public class MfaService {
-    private final MfaChallengeRepository repo;
+    // code_hash of challenges answered from the user's authenticator app; nothing is sent
+    private static final String TOTP_CHALLENGE = "totp";
+
+    private final MfaChallengeStore store;
     private final OtpGenerator otp;
-    private final PasswordEncoder encoder;
-    private final EmailService mail;
-    private final SmsService sms;
+    private final OtpHashStrategy otpHash;
+    private final List<OtpHashStrategy> otpHashes;
+    private final OutboxService outbox;
     private final UserService userService;
     private final Clock clock;
     private final MfaProperties props;
+    private final TotpService totp;
+    private final RefreshTokenService refreshTokens;
 
     // You can make this configurable if you want attempts in properties too.
 
-    public MfaService(MfaChallengeRepository repo,
+    public MfaService(MfaChallengeStore store,
                       OtpGenerator otp,
-                      PasswordEncoder encoder,
-                      EmailService mail,
-                      SmsService sms,
+                      List<OtpHashStrategy> otpHashes,
+                      OutboxService outbox,
                       UserService userService,
                       Clock clock,
-                      MfaProperties props) {
-        this.repo = repo;
+                      MfaProperties props,
+                      TotpService totp,
+                      RefreshTokenService refreshTokens,
+                      @Value("${app.mfa.otp-hash:hmac}") String otpHashId) {
+        this.store = store;
         this.otp = otp;
-        this.encoder = encoder;
-        this.mail = mail;
-        this.sms = sms;
+        this.otpHashes = List.copyOf(otpHashes);
+        this.otpHash = otpHashes.stream().filter(h -> h.id().equalsIgnoreCase(otpHashId)).findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown app.mfa.otp-hash: " + otpHashId));
+        this.outbox = outbox;
         this.userService = userService;
         this.clock = clock;
         this.props = props;
+        this.totp = totp;
+        this.refreshTokens = refreshTokens;
     }
 
+    @Transactional
     public MfaChallenge startLoginChallenge(User user) {
-        var latest = repo.findFirstByUserAndPurposeOrderByCreatedAtDesc(user, "LOGIN_MFA").orElse(null);
+        var latest = store.findLatest(user, "LOGIN_MFA").orElse(null);
         if (latest != null && latest.getCreatedAt()
                 .isAfter(Instant.now(clock).minus(props.resendCooldownSeconds(), ChronoUnit.SECONDS))) {
             return latest; // throttle: reuse last within cooldown
         }
 
-        String code = otp.generate6();
+        boolean useTotp = usesTotp(user);
+        String code = useTotp ? null : otp.generate6();
         var ch = new MfaChallenge();
         ch.setUser(user);
-        ch.setCodeHash(encoder.encode(code));
+        ch.setCodeHash(useTotp ? TOTP_CHALLENGE : otpHash.hash(code));
         ch.setExpiresAt(Instant.now(clock).plus(props.loginTtlMinutes(), ChronoUnit.MINUTES));
         ch.setAttempts(0);
         ch.setPurpose("LOGIN_MFA");
-        ch = repo.save(ch);
+        ch = store.create(ch);
 
-        deliverCode(user, code, props.loginTtlMinutes());
+        if (!useTotp) {
+            deliverCode(user, code, props.loginTtlMinutes());
+        }
         return ch;
     }
 
+    private static boolean usesTotp(User user) {
+        return user.getMfaMethod() == MfaMethod.TOTP && user.getTotpConfirmedAt() != null;
+    }
+
     private void deliverCode(User user, String code, int ttlMinutes) {
         MfaMethod method = user.getMfaMethod();
-        if (method == null) {
+        if (method == null || method == MfaMethod.TOTP) {
             // Fallback to global default if user preference is unset
             method = "sms".equalsIgnoreCase(props.method()) ? MfaMethod.SMS_OTP : MfaMethod.EMAIL_OTP;
         }
 
         switch (method) {
             case EMAIL_OTP -> {
-                mail.send(
+                outbox.enqueueEmail(
                         user.getEmail(),
                         "Your login code",
                         "Your verification code is: " + code + " (valid " + ttlMinutes + " minutes)"
@@ -91,7 +110,7 @@ public class MfaService {
                 if (phone == null || phone.isBlank()) {
                     throw new IllegalArgumentException("User has no phone number on file");
                 }
-                sms.send(phone, "Your code: " + code + " (valid " + ttlMinutes + "m)");
+                outbox.enqueueSms(phone, "Your code: " + code + " (valid " + ttlMinutes + "m)");
                 user.setMfaMethod(method);
                 userService.save(user);
             }
@@ -100,54 +119,116 @@ public class MfaService {
     }
 
     public User verifyLoginCode(User user, UUID challengeId, String code) {
-        var ch = repo.findById(challengeId)
+        var ch = store.findById(challengeId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid challenge"));
 
         if (!ch.getUser().getId().equals(user.getId())) {
             throw new IllegalArgumentException("Challenge not for this user");
         }
-        var now = Instant.now(clock);
-        if (now.isAfter(ch.getExpiresAt())) throw new IllegalArgumentException("Code expired");
-        if (ch.getAttempts() >= props.maxAttempts()) throw new IllegalArgumentException("Too many attempts");
-
-        ch.setAttempts(ch.getAttempts() + 1);
-        repo.save(ch);
-
-        if (!encoder.matches(code, ch.getCodeHash())) {
-            throw new IllegalArgumentException("Invalid code");
-        }
-
-        repo.delete(ch); // one-time use
+        checkCode(ch, code);
         return user;
     }
 
     // Add these to your existing MfaService
 
     public User verifyLoginCode(UUID challengeId, String code) {
-        var ch = repo.findById(challengeId)
+        var ch = store.findById(challengeId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid challenge"));
 
+        checkCode(ch, code);
+        // the memory store keeps the User it was given; read the current row
+        return userService.loadDomainUserById(ch.getUser().getId());
+    }
+
+    private void checkCode(MfaChallenge ch, String code) {
         var now = Instant.now(clock);
         if (now.isAfter(ch.getExpiresAt())) throw new IllegalArgumentException("Code expired");
         if (ch.getAttempts() >= props.maxAttempts()) throw new IllegalArgumentException("Too many attempts");
 
-        ch.setAttempts(ch.getAttempts() + 1);
-        repo.save(ch);
+        // counted before checking the code, so concurrent guesses each use up an attempt
+        if (store.recordAttempt(ch, props.maxAttempts()) == 0) {
+            throw new IllegalArgumentException("Too many attempts");
+        }
 
-        if (!encoder.matches(code, ch.getCodeHash())) {
+        boolean valid = TOTP_CHALLENGE.equals(ch.getCodeHash())
+                ? verifyTotp(userService.loadDomainUserById(ch.getUser().getId()), code)
+                : codeMatches(code, ch.getCodeHash());
+        if (!valid) {
             throw new IllegalArgumentException("Invalid code");
         }
 
-        var user = ch.getUser();
-        repo.delete(ch); // one-time use on success
-        return user;
+        if (!store.consume(ch)) { // one-time use on success
+            throw new IllegalArgumentException("Invalid challenge");
+        }
+    }
+
+    private boolean verifyTotp(User user, String code) {
+        return usesTotp(user) && totp.verifyAndConsume(user, user.getTotpSecretEnc(), code);
+    }
+
+    // ------------------ TOTP enrollment ------------------
+
+    /**
+     * Generates a new authenticator secret for the user and keeps it pending: the current secret
+     * and method stay in force until {@link #confirmTotpEnrollment} has seen a valid code from the
+     * new one. The caller must first prove the factor in use now, so a stolen access token alone
+     * cannot replace it: a TOTP user sends a current code, anyone else the code of a challenge
+     * from /mfa/start-session ({@code challengeId}).
+     */
+    public TotpEnrollment startTotpEnrollment(User user, UUID challengeId, String currentCode) {
+        if (currentCode == null || currentCode.isBlank()) {
+            throw new IllegalArgumentException("A code from the current MFA method is required");
+        }
+        if (challengeId != null) {
+            verifyLoginCode(user, challengeId, currentCode); // throws unless the code is right
+        } else if (!verifyTotp(user, currentCode)) {
+            throw new IllegalArgumentException(usesTotp(user)
+                    ? "Invalid code"
+                    : "Start a challenge with /mfa/start-session and send its challengeId");
+        }
+        String secretEnc = totp.newEncryptedSecret();
+        user.setTotpPendingSecretEnc(secretEnc);
+        userService.save(user);
+        return new TotpEnrollment(totp.base32Secret(secretEnc), totp.provisioningUri(user, secretEnc),
+                totp.digits(), totp.periodSeconds());
+    }
+
+    public User confirmTotpEnrollment(User user, String code) {
+        String pending = user.getTotpPendingSecretEnc();
+        if (pending == null) {
+            throw new IllegalArgumentException("No TOTP enrollment in progress");
+        }
+        if (!totp.verifyAndConsume(user, pending, code)) {
+            throw new IllegalArgumentException("Invalid code");
+        }
+        user.setTotpSecretEnc(pending);
+        user.setTotpPendingSecretEnc(null);
+        user.setTotpConfirmedAt(Instant.now(clock));
+        user.setMfaMethod(MfaMethod.TOTP);
+        user.setMfaEnrolled(true);
+        User saved = userService.save(user);
+        // the second factor changed: sessions opened before it must log in again
+        refreshTokens.revokeAllForUser(saved.getId());
+        return saved;
+    }
+
+    public record TotpEnrollment(String secret, String otpauthUri, int digits, long periodSeconds) {}
+
+    /** Verifies with whichever strategy wrote the stored hash, so older challenges keep working. */
+    private boolean codeMatches(String code, String stored) {
+        for (OtpHashStrategy h : otpHashes) {
+            if (h.handles(stored)) {
+                return h.matches(code, stored);
+            }
+        }
+        return false;
     }
 
     /** Helper for resend-by-challenge flows */
     public User userForChallenge(UUID challengeId) {
-        var ch = repo.findById(challengeId)
+        var ch = store.findById(challengeId)
                 .orElseThrow(() -> new IllegalArgumentException("Invalid challenge"));
-        return ch.getUser();
+        return userService.loadDomainUserById(ch.getUser().getId());
     }
 
 }
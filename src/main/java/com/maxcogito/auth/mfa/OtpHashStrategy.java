@@ -0,0 +1,18 @@
+package com.maxcogito.auth.mfa;
+
+/**
+ * How one-time codes are stored in mfa_challenge.code_hash.
+ * Stored values are self-describing, so verification picks the strategy that wrote them.
+ */
+public interface OtpHashStrategy {
+
+    /** Name used by app.mfa.otp-hash to pick the strategy for new challenges. */
+    String id();
+
+    String hash(String code);
+
+    /** True if {@code stored} was produced by this strategy. */
+    boolean handles(String stored);
+
+    boolean matches(String code, String stored);
+}
@@ -0,0 +1,154 @@
+package com.maxcogito.auth.mfa;
+
+import com.maxcogito.auth.domain.User;
+import com.maxcogito.auth.repo.UserRepository;
+import com.maxcogito.auth.security.SecretCipher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * RFC 6238 time-based codes (HMAC-SHA1, 6 digits, 30 s steps: what authenticator apps expect).
+ *
+ * Verification is local CPU work only. Codes from {@code drift-steps} steps either side of now
+ * are accepted to absorb phone clock skew, and each user's last accepted step is advanced with a
+ * conditional update, so a code cannot be used twice even by concurrent requests on different nodes.
+ */
+@Service
+public class TotpService {
+
+    private static final int SECRET_BYTES = 20; // 160 bits, as recommended by RFC 4226
+    private static final int DIGITS = 6;
+    private static final int[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    private static final char[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+
+    private final SecretCipher cipher;
+    private final UserRepository userRepository;
+    private final Clock clock;
+    private final String issuer;
+    private final long periodSeconds;
+    private final int driftSteps;
+    private final SecureRandom random = new SecureRandom();
+
+    public TotpService(SecretCipher cipher,
+                       UserRepository userRepository,
+                       Clock clock,
+                       @Value("${app.mfa.totp.issuer:${app.jwt.issuer}}") String issuer,
+                       @Value("${app.mfa.totp.period-seconds:30}") long periodSeconds,
+                       @Value("${app.mfa.totp.drift-steps:1}") int driftSteps) {
+        this.cipher = cipher;
+        this.userRepository = userRepository;
+        this.clock = clock;
+        this.issuer = issuer;
+        this.periodSeconds = periodSeconds;
+        this.driftSteps = driftSteps;
+    }
+
+    /** New random secret, already encrypted for User.totpSecretEnc. */
+    public String newEncryptedSecret() {
+        byte[] secret = new byte[SECRET_BYTES];
+        random.nextBytes(secret);
+        return cipher.encrypt(secret);
+    }
+
+    /** Base32 secret for manual entry in an authenticator app. */
+    public String base32Secret(String encryptedSecret) {
+        return base32(cipher.decrypt(encryptedSecret));
+    }
+
+    /** otpauth:// URI for a QR code (Key URI Format used by Google Authenticator and others). */
+    public String provisioningUri(User user, String encryptedSecret) {
+        String label = enc(issuer) + ":" + enc(user.getEmail() != null ? user.getEmail() : user.getUsername());
+        return "otpauth://totp/" + label
+                + "?secret=" + base32Secret(encryptedSecret)
+                + "&issuer=" + enc(issuer)
+                + "&algorithm=SHA1&digits=" + DIGITS
+                + "&period=" + periodSeconds;
+    }
+
+    public long periodSeconds() {
+        return periodSeconds;
+    }
+
+    public int digits() {
+        return DIGITS;
+    }
+
+    /**
+     * True if {@code code} is valid for the user's secret right now and its time-step has not been
+     * used before. A successful call consumes the step.
+     */
+    public boolean verifyAndConsume(User user, String encryptedSecret, String code) {
+        if (encryptedSecret == null || code == null || code.length() != DIGITS || !code.chars().allMatch(Character::isDigit)) {
+            return false;
+        }
+        long step = matchingStep(cipher.decrypt(encryptedSecret), code, Instant.now(clock));
+        return step >= 0 && userRepository.advanceTotpStep(user.getId(), step) == 1;
+    }
+
+    /** Time-step within the drift window whose code equals {@code code}, or -1. */
+    long matchingStep(byte[] secret, String code, Instant now) {
+        long current = Math.floorDiv(now.getEpochSecond(), periodSeconds);
+        byte[] expected = code.getBytes(StandardCharsets.US_ASCII);
+        long found = -1;
+        // check the whole window every time, so timing does not reveal which step matched
+        for (long step = current - driftSteps; step <= current + driftSteps; step++) {
+            byte[] candidate = generate(secret, step).getBytes(StandardCharsets.US_ASCII);
+            if (MessageDigest.isEqual(candidate, expected) && found < 0) {
+                found = step;
+            }
+        }
+        return found;
+    }
+
+    /** RFC 4226 HOTP for the given counter. */
+    static String generate(byte[] secret, long counter) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(secret, "HmacSHA1"));
+            byte[] h = mac.doFinal(ByteBuffer.allocate(8).putLong(counter).array());
+            int offset = h[h.length - 1] & 0x0f;
+            int binary = ((h[offset] & 0x7f) << 24)
+                    | ((h[offset + 1] & 0xff) << 16)
+                    | ((h[offset + 2] & 0xff) << 8)
+                    | (h[offset + 3] & 0xff);
+            String otp = Integer.toString(binary % POW10[DIGITS]);
+            return "0".repeat(DIGITS - otp.length()) + otp;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA1 not available", e);
+        }
+    }
+
+    /** RFC 4648 base32 without padding. */
+    static String base32(byte[] data) {
+        StringBuilder out = new StringBuilder((data.length * 8 + 4) / 5);
+        int buffer = 0;
+        int bits = 0;
+        for (byte b : data) {
+            buffer = (buffer << 8) | (b & 0xff);
+            bits += 8;
+            while (bits >= 5) {
+                out.append(BASE32[(buffer >> (bits - 5)) & 0x1f]);
+                bits -= 5;
+            }
+        }
+        if (bits > 0) {
+            out.append(BASE32[(buffer << (5 - bits)) & 0x1f]);
+        }
+        return out.toString();
+    }
+
+    private static String enc(String s) {
+        return URLEncoder.encode(s, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
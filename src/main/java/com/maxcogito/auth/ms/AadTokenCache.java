@@ -0,0 +1,265 @@
+package com.maxcogito.auth.ms;
+
+import com.maxcogito.auth.config.OutboundHttpClients;
+import com.maxcogito.auth.dto.ClientCredentialsToken;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Client-credentials tokens from AAD, cached per scope.
+ *
+ * A token is refreshed in the background once it enters the last {@code refresh-ahead} of its
+ * lifetime, so callers keep getting the current token while the next one is fetched; a caller only
+ * waits when there is no usable token at all (first use of a scope, or AAD down past expiry).
+ * Concurrent fetches for the same scope are coalesced into one request (single flight).
+ */
+@Component
+public class AadTokenCache implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AadTokenCache.class);
+
+    // never hand out a token this close to expiry
+    private static final Duration EXPIRY_SAFETY = Duration.ofSeconds(60);
+
+    private final RestTemplate rest;
+    private final Clock clock;
+    private final String tokenUrl;
+    private final String clientId;
+    private final String clientSecret;
+    private final String defaultScope;
+    private final Duration refreshAhead;
+    private final Duration waitTimeout;
+    private final boolean prefetch;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService fetcher = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "aad-token");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public AadTokenCache(OutboundHttpClients httpClients,
+                         Clock clock,
+                         @Value("${msgraph.authorityHost:https://login.microsoftonline.com}") String authorityHost,
+                         @Value("${msgraph.tenantId}") String tenantId,
+                         @Value("${msgraph.clientId}") String clientId,
+                         @Value("${msgraph.clientSecret}") String clientSecret,
+                         @Value("${msgraph.oauthScope:https://graph.microsoft.com/.default}") String defaultScope,
+                         @Value("${msgraph.token.refresh-ahead-seconds:600}") long refreshAheadSeconds,
+                         @Value("${msgraph.token.wait-timeout-ms:10000}") long waitTimeoutMs,
+                         @Value("${msgraph.token.prefetch:true}") boolean prefetch) {
+        this.rest = httpClients.restTemplate(OutboundHttpClients.AAD);
+        this.clock = clock;
+        this.tokenUrl = authorityHost + "/" + tenantId + "/oauth2/v2.0/token";
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.defaultScope = defaultScope;
+        this.refreshAhead = Duration.ofSeconds(refreshAheadSeconds);
+        this.waitTimeout = Duration.ofMillis(waitTimeoutMs);
+        this.prefetch = prefetch;
+    }
+
+    @PostConstruct
+    void warmUp() {
+        if (prefetch) {
+            // async: startup must not depend on AAD being reachable
+            fetchAsync(defaultScope, entry(defaultScope));
+        }
+    }
+
+    public String defaultScope() {
+        return defaultScope;
+    }
+
+    /** Current token for {@code scope} (null/blank means the default scope). */
+    public ClientCredentialsToken get(String scope) {
+        String s = normalise(scope);
+        Entry e = entry(s);
+        Cached c = e.token;
+        long now = clock.millis();
+        if (c != null && now < c.expiresAtMs - EXPIRY_SAFETY.toMillis()) {
+            hits.increment();
+            if (now >= c.expiresAtMs - refreshAhead.toMillis()) {
+                fetchAsync(s, e); // the scheduled sweep normally gets here first
+            }
+            return c.view(now);
+        }
+        waits.increment();
+        return await(fetchAsync(s, e)).view(clock.millis());
+    }
+
+    /**
+     * The token was rejected (401): fetch a new one. Callers that hit this at the same time share
+     * one request; if a newer token than {@code rejectedAccessToken} is already cached it is returned.
+     */
+    public ClientCredentialsToken refresh(String scope, String rejectedAccessToken) {
+        String s = normalise(scope);
+        Entry e = entry(s);
+        Cached c = e.token;
+        if (c != null && rejectedAccessToken != null && !c.token.getAccess_token().equals(rejectedAccessToken)
+                && clock.millis() < c.expiresAtMs - EXPIRY_SAFETY.toMillis()) {
+            return c.view(clock.millis());
+        }
+        return await(fetchAsync(s, e)).view(clock.millis());
+    }
+
+    /** Refresh-ahead for every scope that has been used. */
+    @Scheduled(fixedDelayString = "${msgraph.token.sweep-ms:30000}")
+    public void refreshExpiring() {
+        long now = clock.millis();
+        entries.forEach((scope, e) -> {
+            Cached c = e.token;
+            if (c != null && now >= c.expiresAtMs - refreshAhead.toMillis()) {
+                fetchAsync(scope, e);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("hits", hits.sum());
+        out.put("waits", waits.sum());
+        out.put("fetches", fetches.sum());
+        out.put("failures", failures.sum());
+        Map<String, Object> scopes = new LinkedHashMap<>();
+        long now = clock.millis();
+        entries.forEach((scope, e) -> {
+            Cached c = e.token;
+            scopes.put(scope, c == null ? null : Math.max(0, (c.expiresAtMs - now) / 1000));
+        });
+        out.put("expiresInSeconds", scopes);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        fetcher.shutdownNow();
+    }
+
+    // ---------------------------------------------------------------------
+
+    private Entry entry(String scope) {
+        return entries.computeIfAbsent(scope, k -> new Entry());
+    }
+
+    private String normalise(String scope) {
+        return scope == null || scope.isBlank() ? defaultScope : scope;
+    }
+
+    /** Joins the fetch already running for this scope, or starts one. */
+    private CompletableFuture<Cached> fetchAsync(String scope, Entry e) {
+        while (true) {
+            CompletableFuture<Cached> running = e.inFlight.get();
+            if (running != null) {
+                return running;
+            }
+            CompletableFuture<Cached> mine = new CompletableFuture<>();
+            if (e.inFlight.compareAndSet(null, mine)) {
+                try {
+                    fetcher.execute(() -> {
+                        try {
+                            Cached fresh = fetch(scope);
+                            e.token = fresh;
+                            mine.complete(fresh);
+                        } catch (RuntimeException ex) {
+                            failures.increment();
+                            // a still-valid token stays in place; the next sweep retries
+                            log.warn("AAD token fetch for scope {} failed: {}", scope, ex.getMessage());
+                            mine.completeExceptionally(ex);
+                        } finally {
+                            e.inFlight.compareAndSet(mine, null);
+                        }
+                    });
+                } catch (RuntimeException ex) {
+                    e.inFlight.compareAndSet(mine, null);
+                    mine.completeExceptionally(ex);
+                }
+                return mine;
+            }
+        }
+    }
+
+    private Cached await(CompletableFuture<Cached> f) {
+        try {
+            return f.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException("AAD token request error", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("AAD token request timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for AAD token");
+        }
+    }
+
+    private Cached fetch(String scope) {
+        fetches.increment();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("client_id", clientId);
+        form.add("client_secret", clientSecret);
+        form.add("scope", scope);
+        form.add("grant_type", "client_credentials");
+
+        try {
+            var resp = rest.postForEntity(tokenUrl, new HttpEntity<>(form, headers), ClientCredentialsToken.class);
+            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
+                throw new IllegalStateException("AAD token request failed: " + resp.getStatusCode());
+            }
+            var body = resp.getBody();
+            return new Cached(body, clock.millis() + body.getExpires_in() * 1000L);
+        } catch (RestClientException ex) {
+            throw new IllegalStateException("AAD token request error", ex);
+        }
+    }
+
+    private static final class Entry {
+        volatile Cached token;
+        final AtomicReference<CompletableFuture<Cached>> inFlight = new AtomicReference<>();
+    }
+
+    private record Cached(ClientCredentialsToken token, long expiresAtMs) {
+        /** Copy whose expires_in is what is left, not what AAD originally granted. */
+        ClientCredentialsToken view(long nowMs) {
+            ClientCredentialsToken t = new ClientCredentialsToken();
+            t.setAccess_token(token.getAccess_token());
+            t.setToken_type(token.getToken_type());
+            t.setExt_expires_in(token.getExt_expires_in());
+            t.setExpires_in(Math.max(0, (expiresAtMs - nowMs) / 1000));
+            return t;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.maxcogito.auth.repo;
+
+import com.maxcogito.auth.domain.JwtSigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    /** Keys that can still verify tokens: not retired, or retired after {@code since}. */
+    @Query("select k from JwtSigningKey k " +
+            "where k.retiredAt is null or k.retiredAt > :since " +
+            "order by k.createdAt desc")
+    List<JwtSigningKey> findVerificationKeys(@Param("since") Instant since);
+
+    /** Retire keys superseded by a newer key that is already signing. */
+    @Modifying
+    @Query("update JwtSigningKey k set k.retiredAt = :now " +
+            "where k.retiredAt is null and k.createdAt < :createdBefore")
+    int retireCreatedBefore(@Param("createdBefore") Instant createdBefore, @Param("now") Instant now);
+
+    @Modifying
+    @Query("delete from JwtSigningKey k where k.retiredAt is not null and k.retiredAt < :before")
+    int deleteRetiredBefore(@Param("before") Instant before);
+
+    /** Cluster-wide guard so only one node rotates at a time; released at commit. */
+    @Query(value = "select pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
+}
@@ -3,10 +3,29 @@ package com.maxcogito.auth.repo;
 import com.maxcogito.auth.domain.MfaChallenge;
 import com.maxcogito.auth.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
 
 public interface MfaChallengeRepository extends JpaRepository<MfaChallenge, UUID> {
     Optional<MfaChallenge> findFirstByUserAndPurposeOrderByCreatedAtDesc(User user, String purpose);
+
+    /**
+     * Counts one attempt and returns the new count; empty if the challenge is gone or already has
+     * {@code max} attempts. Not @Modifying: RETURNING makes it a result query.
+     */
+    @Transactional
+    @Query(value = "update mfa_challenge set attempts = attempts + 1 where id = :id and attempts < :max " +
+            "returning attempts", nativeQuery = true)
+    Optional<Integer> incrementAttempts(@Param("id") UUID id, @Param("max") int max);
+
+    /** 1 if this call deleted the challenge, 0 if a concurrent verify already had. */
+    @Transactional
+    @Modifying
+    @Query(value = "delete from mfa_challenge where id = :id", nativeQuery = true)
+    int deleteIfPresent(@Param("id") UUID id);
 }
@@ -0,0 +1,68 @@
+package com.maxcogito.auth.repo;
+
+import com.maxcogito.auth.domain.OutboundMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface OutboundMessageRepository extends JpaRepository<OutboundMessage, UUID> {
+
+    /**
+     * Due messages, row-locked for the calling transaction. SKIP LOCKED lets several nodes poll
+     * concurrently without waiting on (or double-claiming) each other's rows.
+     */
+    @Query(value = """
+        select * from outbound_message
+        where status in ('PENDING', 'SENDING')
+          and next_attempt_at <= :now
+          and (status = 'PENDING' or locked_until < :now)
+        order by next_attempt_at
+        limit :limit
+        for update skip locked
+    """, nativeQuery = true)
+    List<OutboundMessage> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update outbound_message set status = 'SENT', sent_at = :now, body_enc = null, " +
+            "locked_until = null, last_error = null where id = :id and status = 'SENDING'", nativeQuery = true)
+    int markSent(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update outbound_message set status = 'PENDING', next_attempt_at = :nextAttemptAt, " +
+            "locked_until = null, last_error = :error where id = :id and status = 'SENDING'", nativeQuery = true)
+    int markRetry(@Param("id") UUID id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update outbound_message set status = 'DEAD', locked_until = null, last_error = :error " +
+            "where id = :id and status = 'SENDING'", nativeQuery = true)
+    int markDead(@Param("id") UUID id, @Param("error") String error);
+
+    /** Dead-lettered messages go back to the queue with a fresh attempt budget. */
+    @Transactional
+    @Modifying
+    @Query(value = "update outbound_message set status = 'PENDING', attempts = 0, next_attempt_at = :now " +
+            "where id = :id and status = 'DEAD'", nativeQuery = true)
+    int requeueDead(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Query(value = "select id, channel, recipient, attempts, last_error, created_at from outbound_message " +
+            "where status = 'DEAD' order by created_at desc limit :limit", nativeQuery = true)
+    List<Object[]> findDeadLetters(@Param("limit") int limit);
+
+    // rows: [OutboundMessage.Status status, Long count]
+    @Query("select m.status, count(m) from OutboundMessage m group by m.status")
+    List<Object[]> countByStatus();
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from outbound_message where status = 'SENT' and sent_at < :before", nativeQuery = true)
+    int deleteSentBefore(@Param("before") Instant before);
+}
@@ -2,10 +2,37 @@ package com.maxcogito.auth.repo;
 
 import com.maxcogito.auth.domain.PaymentTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.Optional;
 
 public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, Long> {
     Optional<PaymentTransaction> findByProviderId(String providerId);
-}
 
+    /** Records the gateway session; 0 if the row was swept or already has a session. */
+    @Transactional
+    @Modifying
+    @Query(value = "update payment_transaction set provider_id = :providerId, updated_at = :now " +
+            "where id = :id and status = 'CREATED' and provider_id is null", nativeQuery = true)
+    int attachProviderSession(@Param("id") Long id, @Param("providerId") String providerId, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update payment_transaction set status = :status, updated_at = :now " +
+            "where id = :id and status = 'CREATED' and provider_id is null", nativeQuery = true)
+    int closeWithoutSession(@Param("id") Long id, @Param("status") String status, @Param("now") Instant now);
+
+    /**
+     * CREATED rows that never got a gateway session because the node died between the stages;
+     * a failed or timed-out gateway call closes its own row as FAILED.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "update payment_transaction set status = 'ABANDONED', updated_at = :now " +
+            "where status = 'CREATED' and provider_id is null and created_at < :cutoff", nativeQuery = true)
+    int abandonOrphans(@Param("cutoff") Instant cutoff, @Param("now") Instant now);
+}
@@ -0,0 +1,66 @@
+package com.maxcogito.auth.repo;
+
+import com.maxcogito.auth.domain.PaymentWebhookEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface PaymentWebhookEventRepository extends JpaRepository<PaymentWebhookEvent, UUID> {
+
+    /** 1 if the event was stored, 0 if the same (provider, session, event) was already received. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+        insert into payment_webhook_event (provider, session_id, event, subscription_ids, status, next_attempt_at)
+        values (:provider, :sessionId, :event, :subscriptionIds, 'PENDING', :now)
+        on conflict (provider, session_id, event) do nothing
+    """, nativeQuery = true)
+    int insertIfAbsent(@Param("provider") String provider, @Param("sessionId") String sessionId,
+                       @Param("event") String event, @Param("subscriptionIds") String subscriptionIds,
+                       @Param("now") Instant now);
+
+    /** Due events, row-locked for the calling transaction (see OutboundMessageRepository#lockDue). */
+    @Query(value = """
+        select * from payment_webhook_event
+        where status in ('PENDING', 'PROCESSING')
+          and next_attempt_at <= :now
+          and (status = 'PENDING' or locked_until < :now)
+        order by next_attempt_at
+        limit :limit
+        for update skip locked
+    """, nativeQuery = true)
+    List<PaymentWebhookEvent> lockDue(@Param("now") Instant now, @Param("limit") int limit);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update payment_webhook_event set status = 'DONE', processed_at = :now, locked_until = null, " +
+            "last_error = null where id = :id and status = 'PROCESSING'", nativeQuery = true)
+    int markDone(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update payment_webhook_event set status = 'PENDING', next_attempt_at = :nextAttemptAt, " +
+            "locked_until = null, last_error = :error where id = :id and status = 'PROCESSING'", nativeQuery = true)
+    int markRetry(@Param("id") UUID id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    @Transactional
+    @Modifying
+    @Query(value = "update payment_webhook_event set status = 'DEAD', locked_until = null, last_error = :error " +
+            "where id = :id and status = 'PROCESSING'", nativeQuery = true)
+    int markDead(@Param("id") UUID id, @Param("error") String error);
+
+    // rows: [PaymentWebhookEvent.Status status, Long count]
+    @Query("select e.status, count(e) from PaymentWebhookEvent e group by e.status")
+    List<Object[]> countByStatus();
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from payment_webhook_event where status = 'DONE' and processed_at < :before", nativeQuery = true)
+    int deleteDoneBefore(@Param("before") Instant before);
+}
@@ -12,9 +12,40 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+/**
+ * refresh_token is partitioned by created_at (V15). Queries on live tokens take a
+ * {@code createdAfter} bound so the planner prunes to recent partitions; the two-argument
+ * defaults pass {@code now - RefreshToken.MAX_LIFETIME}, which no live token is older than.
+ */
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
     Optional<RefreshToken> findByToken(String token);
 
+    /**
+     * Validates (not revoked, not expired) and stamps last_used_at in one round trip; empty if the
+     * token is unknown or no longer usable. Not @Modifying: RETURNING makes it a result query.
+     */
+    @Query(value = """
+        update refresh_token set last_used_at = :now
+        where token = :token and revoked = false and expires_at > :now and created_at > :createdAfter
+        returning *
+    """, nativeQuery = true)
+    Optional<RefreshToken> validateAndStamp(@Param("token") String token, @Param("now") Instant now,
+                                            @Param("createdAfter") Instant createdAfter);
+
+    default Optional<RefreshToken> validateAndStamp(String token, Instant now) {
+        return validateAndStamp(token, now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
+
+    /** Same check as {@link #validateAndStamp} without the write (last_used_at is buffered instead). */
+    @Query(value = "select * from refresh_token where token = :token and revoked = false and expires_at > :now " +
+            "and created_at > :createdAfter", nativeQuery = true)
+    Optional<RefreshToken> findUsable(@Param("token") String token, @Param("now") Instant now,
+                                      @Param("createdAfter") Instant createdAfter);
+
+    default Optional<RefreshToken> findUsable(String token, Instant now) {
+        return findUsable(token, now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
+
     @Modifying
     @Query("delete from RefreshToken r " +
             "where r.revoked = true or r.expiresAt < :now")
@@ -22,21 +53,36 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
 
     @Query("select r from RefreshToken r " +
             "join fetch r.user u " +
-            "where r.revoked = false and r.expiresAt > :now")
-    List<RefreshToken> findActive(@Param("now") Instant now);
+            "where r.revoked = false and r.expiresAt > :now and r.createdAt > :createdAfter")
+    List<RefreshToken> findActive(@Param("now") Instant now, @Param("createdAfter") Instant createdAfter);
+
+    default List<RefreshToken> findActive(Instant now) {
+        return findActive(now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
 
+    /** Older rows are past their expiry anyway, so only the partitions that can hold live tokens are touched. */
     @Modifying
     @Query("update RefreshToken r set r.revoked = true, r.revokedAt = :now " +
-            "where r.user.id = :userId and r.revoked = false")
-    int revokeAllForUser(@Param("userId") UUID userId, @Param("now") Instant now);
+            "where r.user.id = :userId and r.revoked = false and r.createdAt > :createdAfter")
+    int revokeAllForUser(@Param("userId") UUID userId, @Param("now") Instant now,
+                         @Param("createdAfter") Instant createdAfter);
+
+    default int revokeAllForUser(UUID userId, Instant now) {
+        return revokeAllForUser(userId, now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
 
     @Query("""
         select count(distinct rt.user.id)
         from RefreshToken rt
         where rt.revoked = false
           and rt.expiresAt > :now
+          and rt.createdAt > :createdAfter
     """)
-    long countActiveUsers(@Param("now") Instant now);
+    long countActiveUsers(@Param("now") Instant now, @Param("createdAfter") Instant createdAfter);
+
+    default long countActiveUsers(Instant now) {
+        return countActiveUsers(now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
 
     @Query("""
         select rt.user.id,
@@ -45,10 +91,39 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
         from RefreshToken rt
         where rt.revoked = false
           and rt.expiresAt > :now
+          and rt.createdAt > :createdAfter
         group by rt.user.id
         order by max(coalesce(rt.lastUsedAt, rt.createdAt)) desc
     """)
-    List<Object[]> findActiveUserSessionsRaw(@Param("now") Instant now);
+    List<Object[]> findActiveUserSessionsRaw(@Param("now") Instant now, @Param("createdAfter") Instant createdAfter);
+
+    default List<Object[]> findActiveUserSessionsRaw(Instant now) {
+        return findActiveUserSessionsRaw(now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
+
+    /**
+     * Revokes the user's live tokens ranked past {@code keep} by coalesce(last_used_at, created_at),
+     * newest first; served by idx_refresh_token_user_recency.
+     */
+    @Modifying
+    @Query(value = """
+        update refresh_token set revoked = true, revoked_at = :now
+        where id in (
+            select id from (
+                select id, row_number() over (order by coalesce(last_used_at, created_at) desc, id desc) as rn
+                from refresh_token
+                where user_id = :userId and revoked = false and expires_at > :now and created_at > :createdAfter
+            ) ranked
+            where rn > :keep
+        )
+        and created_at > :createdAfter
+    """, nativeQuery = true)
+    int revokeBeyondLimit(@Param("userId") UUID userId, @Param("keep") int keep, @Param("now") Instant now,
+                          @Param("createdAfter") Instant createdAfter);
+
+    default int revokeBeyondLimit(UUID userId, int keep, Instant now) {
+        return revokeBeyondLimit(userId, keep, now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
 
     // NEW: all active tokens for a user, newest first
     @Query("""
@@ -57,11 +132,17 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID
         where rt.user.id = :userId
           and rt.revoked = false
           and rt.expiresAt > :now
+          and rt.createdAt > :createdAfter
         order by coalesce(rt.lastUsedAt, rt.createdAt) desc, rt.id desc
     """)
     List<RefreshToken> findActiveForUserOrderByRecent(
             @Param("userId") UUID userId,
-            @Param("now") Instant now
+            @Param("now") Instant now,
+            @Param("createdAfter") Instant createdAfter
     );
+
+    default List<RefreshToken> findActiveForUserOrderByRecent(UUID userId, Instant now) {
+        return findActiveForUserOrderByRecent(userId, now, now.minus(RefreshToken.MAX_LIFETIME));
+    }
 }
 
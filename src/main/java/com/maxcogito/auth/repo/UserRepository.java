@@ -2,7 +2,13 @@ package com.maxcogito.auth.repo;
 
 import com.maxcogito.auth.domain.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,4 +19,61 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     List<User> findAll();
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    /** Compare-and-set on the hash, so a rehash never overwrites a password changed meanwhile. */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.passwordHash = :newHash where u.id = :id and u.passwordHash = :oldHash")
+    int updatePasswordHashIfUnchanged(@Param("id") UUID id,
+                                      @Param("oldHash") String oldHash,
+                                      @Param("newHash") String newHash);
+
+    // ---- access-token epoch (see TokenEpochRegistry) ----
+
+    @Modifying
+    @Query(value = "update app_user set token_epoch = token_epoch + 1, token_epoch_changed_at = :now " +
+            "where id = :id", nativeQuery = true)
+    int bumpTokenEpoch(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Query("select u.tokenEpoch from User u where u.id = :id")
+    Optional<Long> findTokenEpochById(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = "update app_user set token_epoch = token_epoch + 1, token_epoch_changed_at = :now " +
+            "where id in (:ids)", nativeQuery = true)
+    int bumpTokenEpochs(@Param("ids") Collection<UUID> ids, @Param("now") Instant now);
+
+    // rows: [UUID id, Long tokenEpoch]
+    @Query("select u.id, u.tokenEpoch from User u where u.id in :ids")
+    List<Object[]> findTokenEpochsByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // rows: [UUID id, Long tokenEpoch, Instant tokenEpochChangedAt]
+    @Query("""
+        select u.id, u.tokenEpoch, u.tokenEpochChangedAt
+        from User u
+        where u.tokenEpochChangedAt > :since
+    """)
+    List<Object[]> findTokenEpochsChangedSince(@Param("since") Instant since);
+
+    @Modifying
+    @Query(value = "insert into user_token_tombstone (user_id, deleted_at) values (:id, :now) " +
+            "on conflict (user_id) do update set deleted_at = excluded.deleted_at", nativeQuery = true)
+    int insertTokenTombstone(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Query(value = "select cast(user_id as varchar) from user_token_tombstone where deleted_at > :since",
+            nativeQuery = true)
+    List<String> findTokenTombstoneIdsSince(@Param("since") Instant since);
+
+    @Modifying
+    @Query(value = "delete from user_token_tombstone where deleted_at < :before", nativeQuery = true)
+    int deleteTokenTombstonesBefore(@Param("before") Instant before);
+
+    // ---- TOTP replay protection ----
+
+    /** Accepts a TOTP time-step at most once: only succeeds if it is newer than the last one used. */
+    @Transactional
+    @Modifying
+    @Query(value = "update app_user set totp_last_step = :step where id = :id and totp_last_step < :step",
+            nativeQuery = true)
+    int advanceTotpStep(@Param("id") UUID id, @Param("step") long step);
 }
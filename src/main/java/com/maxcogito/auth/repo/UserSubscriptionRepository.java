@@ -2,8 +2,16 @@ package com.maxcogito.auth.repo;
 
 import com.maxcogito.auth.domain.UserSubscription;
 import com.maxcogito.auth.domain.SubscriptionServiceKind;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,4 +21,34 @@ public interface UserSubscriptionRepository extends JpaRepository<UserSubscripti
     List<UserSubscription> findByUserId(UUID userId);
 
     Optional<UserSubscription> findByUserIdAndServiceKind(UUID userId, SubscriptionServiceKind kind);
+
+    /** Subscriptions with their users in one query; read-only, so changes are written explicitly. */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("select s from UserSubscription s join fetch s.user where s.id in :ids")
+    List<UserSubscription> findAllWithUserByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Next page of granted subscriptions past their valid_until, after the keyset cursor
+     * (afterValidUntil, afterId), row-locked for the calling transaction. Served by
+     * idx_user_subscription_status_valid_until.
+     * rows: [Long id, UUID userId, String serviceKind, Instant validUntil]
+     */
+    @Query(value = """
+        select id, user_id, service_kind, valid_until from user_subscription
+        where status in ('APPROVED', 'ACTIVE')
+          and valid_until < :now
+          and (valid_until, id) > (:afterValidUntil, :afterId)
+        order by valid_until, id
+        limit :limit
+        for update skip locked
+    """, nativeQuery = true)
+    List<Object[]> lockExpiredPage(@Param("now") Instant now,
+                                   @Param("afterValidUntil") Instant afterValidUntil,
+                                   @Param("afterId") long afterId,
+                                   @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "update user_subscription set status = 'EXPIRED' " +
+            "where id in (:ids) and status in ('APPROVED', 'ACTIVE')", nativeQuery = true)
+    int markExpired(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,83 @@
+package com.maxcogito.auth.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Picks the BCrypt work factor once at startup so one hash takes about
+ * {@code app.security.password-hashing.target-ms} on this hardware.
+ *
+ * Each +1 of strength doubles the cost, so a single timing at a cheap probe strength is enough
+ * to extrapolate. An explicit {@code app.security.password-hashing.strength} skips calibration.
+ */
+@Component
+public class BcryptCalibration {
+
+    private static final Logger log = LoggerFactory.getLogger(BcryptCalibration.class);
+
+    private static final int PROBE_STRENGTH = 8;
+
+    private final int strength;
+    private final long targetMs;
+    private final double estimatedMs;
+    private final boolean calibrated;
+
+    public BcryptCalibration(@Value("${app.security.password-hashing.strength:0}") int configuredStrength,
+                             @Value("${app.security.password-hashing.target-ms:250}") long targetMs,
+                             @Value("${app.security.password-hashing.min-strength:10}") int minStrength,
+                             @Value("${app.security.password-hashing.max-strength:14}") int maxStrength) {
+        this.targetMs = targetMs;
+        double probeMs = measure(PROBE_STRENGTH);
+
+        if (configuredStrength > 0) {
+            this.strength = configuredStrength;
+            this.calibrated = false;
+        } else {
+            int s = PROBE_STRENGTH;
+            double t = probeMs;
+            while (s < maxStrength && t * 2 <= targetMs) {
+                s++;
+                t *= 2;
+            }
+            this.strength = Math.max(minStrength, s);
+            this.calibrated = true;
+        }
+        this.estimatedMs = probeMs * Math.pow(2, strength - PROBE_STRENGTH);
+        log.info("BCrypt strength {} ({}, ~{} ms/hash, target {} ms)", strength,
+                calibrated ? "calibrated" : "configured", Math.round(estimatedMs), targetMs);
+    }
+
+    public int strength() {
+        return strength;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("strength", strength);
+        out.put("calibrated", calibrated);
+        out.put("targetMs", targetMs);
+        out.put("estimatedMs", estimatedMs);
+        return out;
+    }
+
+    /** Best of a few runs after warm-up; the minimum is the least noisy estimate of pure CPU cost. */
+    private static double measure(int strength) {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(strength);
+        String hash = probe.encode("calibration-probe");
+        probe.matches("calibration-probe", hash);
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long t0 = System.nanoTime();
+            probe.matches("calibration-probe", hash);
+            best = Math.min(best, System.nanoTime() - t0);
+        }
+        return best / 1e6;
+    }
+}
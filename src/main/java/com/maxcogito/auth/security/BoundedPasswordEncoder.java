@@ -0,0 +1,152 @@
+package com.maxcogito.auth.security;
+
+import com.maxcogito.auth.errors.PasswordHashingUnavailableException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the CPU-heavy encode/matches of the delegate (BCrypt) on a small fixed pool with a bounded
+ * queue, so a login burst can only occupy that many cores instead of every Tomcat thread.
+ *
+ * The calling thread waits for the result; when the queue is full, or the wait exceeds
+ * {@code maxWaitMs}, it fails fast with {@link PasswordHashingUnavailableException} (503 + Retry-After).
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, DisposableBean {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor pool;
+    private final int threads;
+    private final int queueCapacity;
+    private final long maxWaitMs;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long maxWaitMs) {
+        this.delegate = delegate;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.maxWaitMs = maxWaitMs;
+
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(this.threads, this.threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.pool.prestartAllCoreThreads();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword); // cheap: parses the hash prefix
+    }
+
+    public PasswordEncoder getDelegate() {
+        return delegate;
+    }
+
+    public Map<String, Object> stats() {
+        long done = completed.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("threads", threads);
+        out.put("activeThreads", pool.getActiveCount());
+        out.put("queueDepth", pool.getQueue().size());
+        out.put("queueCapacity", queueCapacity);
+        out.put("completed", done);
+        out.put("rejected", rejected.sum());
+        out.put("timedOut", timedOut.sum());
+        out.put("avgHashMs", done == 0 ? 0.0 : hashNanos.sum() / 1e6 / done);
+        out.put("maxHashMs", maxHashNanos.get() / 1e6);
+        out.put("avgQueueWaitMs", done == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / done);
+        out.put("maxQueueWaitMs", maxQueueWaitNanos.get() / 1e6);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdown();
+    }
+
+    private <T> T submit(Callable<T> work) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                long startedAt = System.nanoTime();
+                try {
+                    return work.call();
+                } finally {
+                    long wait = startedAt - enqueuedAt;
+                    long took = System.nanoTime() - startedAt;
+                    queueWaitNanos.add(wait);
+                    maxQueueWaitNanos.accumulate(wait);
+                    hashNanos.add(took);
+                    maxHashNanos.accumulate(took);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw busy();
+        }
+
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false); // drops it if still queued; a running hash cannot be interrupted
+            timedOut.increment();
+            throw busy();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private PasswordHashingUnavailableException busy() {
+        // time to drain what is queued ahead of a new request, at the observed hash cost
+        long done = Math.max(1, completed.sum());
+        double avgMs = Math.max(1.0, hashNanos.sum() / 1e6 / done);
+        long backlog = pool.getQueue().size() + pool.getActiveCount();
+        long retryAfter = Math.max(1, (long) Math.ceil(backlog * avgMs / threads / 1000.0));
+        return new PasswordHashingUnavailableException("Password hashing is at capacity, retry later", retryAfter);
+    }
+}
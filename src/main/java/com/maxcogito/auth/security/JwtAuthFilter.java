@@ -5,6 +5,7 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -22,10 +23,21 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsServiceImpl userDetailsService;
+    private final VerifiedClaimsCache claimsCache;
+    private final TokenEpochRegistry tokenEpochs;
 
-    public JwtAuthFilter(JwtService jwtService, UserDetailsServiceImpl userDetailsService) {
+    // "database" (default): reload the user per request; "stateless": trust the verified claims
+    private final boolean stateless;
+
+    public JwtAuthFilter(JwtService jwtService, UserDetailsServiceImpl userDetailsService,
+                         VerifiedClaimsCache claimsCache,
+                         TokenEpochRegistry tokenEpochs,
+                         @Value("${app.security.auth-mode:database}") String authMode) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.claimsCache = claimsCache;
+        this.tokenEpochs = tokenEpochs;
+        this.stateless = "stateless".equalsIgnoreCase(authMode);
     }
 
     @Override
@@ -35,13 +47,26 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (StringUtils.hasText(header) && header.startsWith("Bearer ")) {
             String token = header.substring(7);
             try {
-                Claims claims = jwtService.parseClaims(token);
+                Claims claims = claimsCache.get(token);
+                if (claims == null) {
+                    claims = jwtService.parseClaims(token); // throws if signature/exp invalid
+                    claimsCache.put(token, claims);
+                }
                 String username = claims.get("username", String.class);
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                    var userDetails = userDetailsService.loadUserByUsername(username);
-                    // Optional: verify roles from token if needed
-                    UsernamePasswordAuthenticationToken auth =
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                // Revoked (epoch bumped after issuance)? In-memory check, no I/O.
+                Object tep = claims.get("tep");
+                boolean current = tokenEpochs.isCurrent(JwtPrincipal.userId(claims),
+                        tep instanceof Number n ? n.longValue() : 0L);
+                if (current && username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                    UsernamePasswordAuthenticationToken auth;
+                    if (stateless) {
+                        // No DB hit: uid/username/roles come from the signed token
+                        var principal = JwtPrincipal.fromClaims(claims);
+                        auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+                    } else {
+                        var userDetails = userDetailsService.loadUserByUsername(username);
+                        auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    }
                     auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(auth);
                 }
@@ -0,0 +1,313 @@
+package com.maxcogito.auth.security;
+
+import com.maxcogito.auth.domain.JwtSigningKey;
+import com.maxcogito.auth.repo.JwtSigningKeyRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rotating ES256 key ring for app.jwt.signing-mode=es256.
+ *
+ * Keys live in jwt_signing_key so every node signs with the same key. A new key is published
+ * in the JWKS for {@code publish-lead} before it starts signing, so consumers that cache the
+ * JWKS already know it; a superseded key is retired but kept for verification until every
+ * token it signed has expired. Rotation runs under a Postgres advisory lock, so only one node
+ * rotates at a time.
+ *
+ * Lookups read an immutable snapshot that is swapped on reload, so the hot path never blocks.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    public static final String ALG = "ES256";
+    private static final String CURVE = "secp256r1";
+    private static final long ROTATION_LOCK_KEY = 0x4A574B52L; // "JWKR"
+    private static final long MISS_RELOAD_INTERVAL_MS = 5_000;
+
+    private final JwtSigningKeyRepository repo;
+    private final SecretCipher cipher;
+    private final TransactionTemplate tx;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final Duration rotationPeriod;
+    private final Duration publishLead;
+    private final Duration retention;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private final AtomicLong lastMissReload = new AtomicLong();
+
+    public JwtKeyRing(JwtSigningKeyRepository repo,
+                      SecretCipher cipher,
+                      PlatformTransactionManager transactionManager,
+                      Clock clock,
+                      @Value("${app.jwt.signing-mode:hs256}") String signingMode,
+                      @Value("${app.jwt.keys.rotation-days:30}") long rotationDays,
+                      @Value("${app.jwt.keys.publish-lead-seconds:600}") long publishLeadSeconds,
+                      @Value("${app.jwt.keys.reload-ms:60000}") long reloadMs,
+                      @Value("${app.jwt.expirationMinutes}") long accessTokenMinutes,
+                      @Value("${app.refresh.tokenTtlDays:14}") long refreshTtlDays) {
+        this.repo = repo;
+        this.cipher = cipher;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.enabled = "es256".equalsIgnoreCase(signingMode);
+        this.rotationPeriod = Duration.ofDays(rotationDays);
+        this.publishLead = Duration.ofSeconds(publishLeadSeconds);
+        // longest-lived JWT we sign, plus slack for nodes that have not reloaded yet
+        Duration maxTokenLifetime = Duration.ofMinutes(Math.max(accessTokenMinutes, refreshTtlDays * 24 * 60));
+        this.retention = maxTokenLifetime.plusMillis(2 * reloadMs);
+    }
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            maintain();
+            if (snapshot.active() == null) {
+                log.warn("No ES256 signing key available yet; will retry on the next reload");
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Key new tokens are signed with. */
+    public ActiveKey signingKey() {
+        ActiveKey active = snapshot.active();
+        if (active == null) {
+            throw new IllegalStateException("No active JWT signing key");
+        }
+        return active;
+    }
+
+    /** Public key for {@code kid}, or null if unknown (or retired past its last token's expiry). */
+    public PublicKey verificationKey(String kid) {
+        PublicKey key = snapshot.verification().get(kid);
+        if (key == null && enabled) {
+            // another node may have created it since our last reload; re-read, but rarely
+            long now = clock.millis();
+            long last = lastMissReload.get();
+            if (now - last >= MISS_RELOAD_INTERVAL_MS && lastMissReload.compareAndSet(last, now)) {
+                reload();
+                key = snapshot.verification().get(kid);
+            }
+        }
+        return key;
+    }
+
+    /** JWKS "keys" array; every key that can still verify a live token. */
+    public List<Map<String, Object>> jwks() {
+        return snapshot.jwks();
+    }
+
+    /** Changes whenever the published key set does. */
+    public String jwksEtag() {
+        return snapshot.etag();
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.keys.reload-ms:60000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            tx.executeWithoutResult(status -> rotateIfDue());
+        } catch (Exception e) {
+            log.warn("JWT key rotation failed: {}", e.getMessage());
+        }
+        reload();
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot s = snapshot;
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("activeKid", s.active() != null ? s.active().kid() : null);
+        out.put("verificationKeys", s.verification().size());
+        out.put("loadedAt", s.loadedAt() != null ? s.loadedAt().toString() : null);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------
+
+    private void rotateIfDue() {
+        if (!repo.tryAdvisoryXactLock(ROTATION_LOCK_KEY)) {
+            return; // another node is rotating
+        }
+        Instant now = clock.instant();
+        List<JwtSigningKey> keys = new ArrayList<>(repo.findVerificationKeys(now.minus(retention)));
+        JwtSigningKey newest = keys.stream().filter(k -> k.getRetiredAt() == null).findFirst().orElse(null);
+
+        if (newest == null || !newest.getCreatedAt().isAfter(now.minus(rotationPeriod))) {
+            JwtSigningKey created = generate(now);
+            repo.save(created);
+            keys.add(0, created);
+            log.info("Created JWT signing key {}", created.getKid());
+        }
+
+        JwtSigningKey signing = chooseSigning(keys, now);
+        if (signing != null) {
+            int retired = repo.retireCreatedBefore(signing.getCreatedAt(), now);
+            if (retired > 0) {
+                log.info("Retired {} JWT signing key(s) superseded by {}", retired, signing.getKid());
+            }
+        }
+        repo.deleteRetiredBefore(now.minus(retention));
+    }
+
+    private void reload() {
+        try {
+            Instant now = clock.instant();
+            List<JwtSigningKey> keys = repo.findVerificationKeys(now.minus(retention));
+
+            Map<String, PublicKey> verification = new HashMap<>();
+            List<Map<String, Object>> jwks = new ArrayList<>();
+            for (JwtSigningKey k : keys) {
+                PublicKey pub = decodePublic(k.getPublicKey());
+                verification.put(k.getKid(), pub);
+                jwks.add(toJwk(k.getKid(), (ECPublicKey) pub));
+            }
+
+            ActiveKey active = null;
+            JwtSigningKey signing = chooseSigning(keys, now);
+            if (signing != null) {
+                active = new ActiveKey(signing.getKid(), decodePrivate(cipher.decrypt(signing.getPrivateKeyEnc())));
+            }
+
+            snapshot = new Snapshot(active, Map.copyOf(verification), List.copyOf(jwks),
+                    etag(verification.keySet().stream().sorted().toList()), now);
+        } catch (Exception e) {
+            // keep serving the last good snapshot
+            log.warn("JWT key ring reload failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Newest non-retired key that has been published for at least {@code publishLead};
+     * falls back to the newest key when none is old enough (first start).
+     */
+    private JwtSigningKey chooseSigning(List<JwtSigningKey> keysNewestFirst, Instant now) {
+        JwtSigningKey fallback = null;
+        for (JwtSigningKey k : keysNewestFirst) {
+            if (k.getRetiredAt() != null) {
+                continue;
+            }
+            if (!k.getCreatedAt().isAfter(now.minus(publishLead))) {
+                return k;
+            }
+            if (fallback == null) {
+                fallback = k;
+            }
+        }
+        return fallback;
+    }
+
+    private JwtSigningKey generate(Instant now) {
+        try {
+            KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+            gen.initialize(new ECGenParameterSpec(CURVE));
+            KeyPair pair = gen.generateKeyPair();
+
+            JwtSigningKey k = new JwtSigningKey();
+            k.setKid(thumbprint((ECPublicKey) pair.getPublic()));
+            k.setAlg(ALG);
+            k.setPrivateKeyEnc(cipher.encrypt(pair.getPrivate().getEncoded()));
+            k.setPublicKey(Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()));
+            k.setCreatedAt(now);
+            return k;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not generate EC key pair", e);
+        }
+    }
+
+    private static PublicKey decodePublic(String base64) throws GeneralSecurityException {
+        return KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+    }
+
+    private static PrivateKey decodePrivate(byte[] pkcs8) throws GeneralSecurityException {
+        return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+    }
+
+    private static Map<String, Object> toJwk(String kid, ECPublicKey key) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kty", "EC");
+        jwk.put("crv", "P-256");
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", ALG);
+        jwk.put("x", coordinate(key.getW().getAffineX()));
+        jwk.put("y", coordinate(key.getW().getAffineY()));
+        return jwk;
+    }
+
+    /** RFC 7638 JWK thumbprint, so the kid is stable and derived from the key itself. */
+    private static String thumbprint(ECPublicKey key) {
+        String canonical = "{\"crv\":\"P-256\",\"kty\":\"EC\",\"x\":\"" + coordinate(key.getW().getAffineX())
+                + "\",\"y\":\"" + coordinate(key.getW().getAffineY()) + "\"}";
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sha256(canonical.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Fixed-length (32 byte) unsigned big-endian, base64url. */
+    private static String coordinate(BigInteger v) {
+        byte[] raw = v.toByteArray();
+        byte[] out = new byte[32];
+        int len = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - len, out, 32 - len, len);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out);
+    }
+
+    private static String etag(List<String> kids) {
+        byte[] digest = sha256(String.join(",", kids).getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+    }
+
+    private static byte[] sha256(byte[] in) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(in);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record ActiveKey(String kid, PrivateKey privateKey) {}
+
+    private record Snapshot(ActiveKey active, Map<String, PublicKey> verification,
+                            List<Map<String, Object>> jwks, String etag, Instant loadedAt) {
+        static final Snapshot EMPTY = new Snapshot(null, Map.of(), List.of(), etag(List.of()), null);
+    }
+}
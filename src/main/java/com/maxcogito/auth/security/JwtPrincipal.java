@@ -0,0 +1,76 @@
+package com.maxcogito.auth.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Principal built straight from verified access-token claims (stateless auth mode).
+ * Carries only what the token already says; use
+ * {@link com.maxcogito.auth.service.UserService#loadDomainUser} when the full User is needed.
+ */
+public class JwtPrincipal implements AuthenticatedPrincipal, Serializable {
+
+    private final UUID id;
+    private final String username;
+    private final String email;
+    private final Set<String> roles;
+
+    public JwtPrincipal(UUID id, String username, String email, Set<String> roles) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.roles = Set.copyOf(roles);
+    }
+
+    /** Builds the principal from verified claims; the id comes from {@link #userId(Claims)}. */
+    public static JwtPrincipal fromClaims(Claims claims) {
+        Set<String> roles = new LinkedHashSet<>();
+        Object raw = claims.get("roles");
+        if (raw instanceof Collection<?> c) {
+            for (Object r : c) {
+                if (r != null) roles.add(r.toString());
+            }
+        }
+        return new JwtPrincipal(userId(claims), claims.get("username", String.class), claims.get("email", String.class), roles);
+    }
+
+    /** uid claim, or sub for tokens that only carry the id there; null if neither is a UUID. */
+    public static UUID userId(Claims claims) {
+        String uid = claims.get("uid", String.class);
+        if (uid == null) {
+            uid = claims.getSubject();
+        }
+        try {
+            return uid != null ? UUID.fromString(uid) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return roles.stream()
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String getName() { return username; }
+
+    public UUID getId() { return id; }
+    public String getUsername() { return username; }
+    public String getEmail() { return email; }
+    public Set<String> getRoles() { return roles; }
+
+    @Override
+    public String toString() { return username; }
+}
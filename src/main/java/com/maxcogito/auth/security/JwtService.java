@@ -5,8 +5,12 @@ import com.maxcogito.auth.domain.User;
 import com.maxcogito.auth.dto.TokenPairResponse;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,7 +27,11 @@ import java.util.stream.Collectors;
 
 @Component
 public class JwtService {
-    private final Key signingKey;
+    private final Key signingKey; // HS256 secret: signs in hs256 mode, verifies kid-less tokens
+    private final JwtParser parser;
+    private final JwtKeyRing keyRing;
+    private final boolean es256;
+    private final boolean acceptHs256;
     private final String issuer;
     private final long expirationMinutes;
 
@@ -31,6 +39,7 @@ public class JwtService {
     private final long refreshTtlDays;
     private final boolean refreshRotateOnUse;
     private final int maxActiveTokens;
+    private final TokenEpochRegistry tokenEpochs;
 
     public JwtService(
             @Value("${app.jwt.secret}") String secretBase64,
@@ -38,14 +47,26 @@ public class JwtService {
             @Value("${app.jwt.expirationMinutes}") long expirationMinutes,
             @Value("${app.refresh.tokenTtlDays}") long refreshTtlDays,
             @Value("${app.refresh.rotateOnUse:true}") boolean refreshRotateOnUse,
-            @Value("${app.jwt.max-active-tokens}") int maxActiveTokens
+            @Value("${app.jwt.max-active-tokens}") int maxActiveTokens,
+            // "hs256" (default, shared secret) or "es256" (rotating key ring, published as JWKS)
+            @Value("${app.jwt.signing-mode:hs256}") String signingMode,
+            // es256 mode: still accept kid-less HS256 tokens issued before the switch
+            @Value("${app.jwt.accept-hs256:true}") boolean acceptHs256,
+            TokenEpochRegistry tokenEpochs,
+            JwtKeyRing keyRing
     ) {
         this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretBase64));
+        this.keyRing = keyRing;
+        this.es256 = "es256".equalsIgnoreCase(signingMode);
+        this.acceptHs256 = !es256 || acceptHs256;
+        // JwtParser is immutable and thread-safe; build it once instead of per request
+        this.parser = Jwts.parserBuilder().setSigningKeyResolver(new KeyResolver()).build();
         this.issuer = issuer;
         this.expirationMinutes = expirationMinutes;
         this.refreshTtlDays = refreshTtlDays;
         this.refreshRotateOnUse = refreshRotateOnUse;
         this.maxActiveTokens = maxActiveTokens;
+        this.tokenEpochs = tokenEpochs;
     }
 
     // ---------- existing createToken overloads stay unchanged ----------
@@ -73,7 +94,7 @@ public class JwtService {
             extraClaims.forEach(builder::claim);
         }
 
-        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
+        return sign(builder).compact();
     }
 
     public String createToken(UUID userId,
@@ -90,6 +111,7 @@ public class JwtService {
                 .setIssuer(issuer)
                 .setSubject(subject)
                 .claim("uid", userId.toString())        // <-- NEW!
+                .claim("tep", tokenEpochs.issueEpoch(userId)) // revocation epoch, see TokenEpochRegistry
                 .claim("username", username)
                 .claim("email", email)
                 .claim("roles", roles)
@@ -100,7 +122,7 @@ public class JwtService {
             extraClaims.forEach(builder::claim);
         }
 
-        return builder.signWith(signingKey, SignatureAlgorithm.HS256).compact();
+        return sign(builder).compact();
     }
 
 
@@ -121,16 +143,15 @@ public class JwtService {
         Instant now = Instant.now();
         Instant exp = now.plus(Duration.ofDays(refreshTtlDays));
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setIssuer(issuer)
                 .setSubject(user.getId().toString())
                 .claim("uid", user.getId().toString())
                 .claim("username", user.getUsername())
                 .claim("token_type", "refresh")
                 .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(exp))
-                .signWith(signingKey, SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(Date.from(exp));
+        return sign(builder).compact();
     }
 
     /** What your controller will call after successful MFA verification. */
@@ -181,7 +202,7 @@ public class JwtService {
         Instant now = Instant.now();
         Instant exp = now.plusSeconds(ttlMinutes * 60L);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
                 .setIssuer(issuer)
                 .setSubject(subject)
                 .claim("username", username)
@@ -191,9 +212,8 @@ public class JwtService {
                 .claim("mfa_verified", false)
                 .claim("email_verified", false)
                 .setIssuedAt(Date.from(now))
-                .setExpiration(Date.from(exp))
-                .signWith(signingKey, SignatureAlgorithm.HS256)
-                .compact();
+                .setExpiration(Date.from(exp));
+        return sign(builder).compact();
     }
 
     public String createMfaAccessToken(User user, Set<String> roles, boolean mfa) {
@@ -203,8 +223,35 @@ public class JwtService {
 
 
     public io.jsonwebtoken.Claims parseClaims(String token) {
-        return Jwts.parserBuilder().setSigningKey(signingKey).build()
-                .parseClaimsJws(token).getBody();
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private JwtBuilder sign(JwtBuilder builder) {
+        if (es256) {
+            JwtKeyRing.ActiveKey key = keyRing.signingKey();
+            return builder.setHeaderParam(JwsHeader.KEY_ID, key.kid())
+                    .signWith(key.privateKey(), SignatureAlgorithm.ES256);
+        }
+        return builder.signWith(signingKey, SignatureAlgorithm.HS256);
+    }
+
+    /** kid header -> key ring public key; no kid -> the HS256 secret (if still accepted). */
+    private class KeyResolver extends SigningKeyResolverAdapter {
+        @Override
+        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+            String kid = header.getKeyId();
+            if (kid == null) {
+                if (!acceptHs256) {
+                    throw new UnsupportedJwtException("Token has no kid");
+                }
+                return signingKey;
+            }
+            Key key = keyRing.verificationKey(kid);
+            if (key == null) {
+                throw new UnsupportedJwtException("Unknown signing key: " + kid);
+            }
+            return key;
+        }
     }
 
     private Set<String> roleNames(User user) {
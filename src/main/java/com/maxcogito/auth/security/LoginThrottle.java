@@ -0,0 +1,238 @@
+package com.maxcogito.auth.security;
+
+import com.maxcogito.auth.errors.LoginThrottledException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket throttle for password logins, checked before AuthenticationManager.authenticate
+ * so rejected attempts never cost a BCrypt verification.
+ *
+ * Each key (client IP, normalised username) has one bucket, implemented as GCRA: the bucket is a
+ * single "theoretical arrival time" updated by CAS, so checks are lock-free. A bucket whose
+ * arrival time is in the past is full again and is indistinguishable from a new one, which is
+ * what lets the sweeper drop it. A stripe at max-entries makes room by evicting its
+ * longest-tracked bucket (FIFO, constant work per login) instead of letting new keys through.
+ */
+@Component
+public class LoginThrottle {
+
+    private final boolean enabled;
+    private final boolean trustForwardedFor;
+    private final Limiter byUsername;
+    private final Limiter byIp;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttledByUsername = new LongAdder();
+    private final LongAdder throttledByIp = new LongAdder();
+
+    public LoginThrottle(@Value("${app.security.login-throttle.enabled:true}") boolean enabled,
+                         @Value("${app.security.login-throttle.trust-forwarded-for:false}") boolean trustForwardedFor,
+                         @Value("${app.security.login-throttle.username.burst:5}") int usernameBurst,
+                         @Value("${app.security.login-throttle.username.per-minute:5}") int usernamePerMinute,
+                         @Value("${app.security.login-throttle.ip.burst:20}") int ipBurst,
+                         @Value("${app.security.login-throttle.ip.per-minute:60}") int ipPerMinute,
+                         @Value("${app.security.login-throttle.max-entries:100000}") int maxEntries) {
+        this.enabled = enabled;
+        this.trustForwardedFor = trustForwardedFor;
+        this.byUsername = new Limiter(usernameBurst, usernamePerMinute, maxEntries);
+        this.byIp = new Limiter(ipBurst, ipPerMinute, maxEntries);
+    }
+
+    /** Consume one attempt for this client and username, or throw {@link LoginThrottledException}. */
+    public void check(String usernameOrEmail, HttpServletRequest request) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+
+        long ipWait = byIp.tryAcquire(clientIp(request), now);
+        if (ipWait > 0) {
+            throttledByIp.increment();
+            throw throttled(ipWait);
+        }
+        if (usernameOrEmail != null && !usernameOrEmail.isBlank()) {
+            long userWait = byUsername.tryAcquire(usernameOrEmail.trim().toLowerCase(Locale.ROOT), now);
+            if (userWait > 0) {
+                throttledByUsername.increment();
+                throw throttled(userWait);
+            }
+        }
+        allowed.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.login-throttle.sweep-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        byUsername.evictIdle(now);
+        byIp.evictIdle(now);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("allowed", allowed.sum());
+        out.put("throttledByUsername", throttledByUsername.sum());
+        out.put("throttledByIp", throttledByIp.sum());
+        out.put("trackedUsernames", byUsername.size());
+        out.put("trackedIps", byIp.size());
+        out.put("evictedWhenFull", byUsername.evictedWhenFull.sum() + byIp.evictedWhenFull.sum());
+        return out;
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (trustForwardedFor) {
+            String xff = request.getHeader("X-Forwarded-For");
+            if (xff != null && !xff.isBlank()) {
+                int comma = xff.indexOf(',');
+                return (comma < 0 ? xff : xff.substring(0, comma)).trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static LoginThrottledException throttled(long waitNanos) {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        return new LoginThrottledException("Too many login attempts, retry later", seconds);
+    }
+
+    /** GCRA buckets in a fixed number of independently bounded stripes. */
+    static final class Limiter {
+        private static final int STRIPES = 16;
+        // written into a bucket by whoever removes it, so a CAS still holding it retries on a new one
+        private static final long RETIRED = Long.MIN_VALUE;
+        // queue entries a full stripe looks at per new key, so eviction cost stays constant
+        private static final int EVICT_SCAN = 8;
+
+        /** A bucket in insertion order; stale once the map holds a different bucket for the key. */
+        private record Slot(String key, AtomicLong tat) {}
+
+        private static final class Stripe {
+            final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+            final ConcurrentLinkedQueue<Slot> order = new ConcurrentLinkedQueue<>();
+
+            boolean isCurrent(Slot slot) {
+                return buckets.get(slot.key()) == slot.tat();
+            }
+        }
+
+        private final long emissionNanos;   // one token every emissionNanos
+        private final long toleranceNanos;  // (burst - 1) tokens may be taken ahead of schedule
+        private final int maxPerStripe;
+        private final Stripe[] stripes = new Stripe[STRIPES];
+        final LongAdder evictedWhenFull = new LongAdder();
+
+        Limiter(int burst, int perMinute, int maxEntries) {
+            this.emissionNanos = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            this.toleranceNanos = emissionNanos * (Math.max(1, burst) - 1);
+            this.maxPerStripe = Math.max(1, maxEntries / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        /** 0 if allowed, otherwise nanos until the next attempt would be. */
+        long tryAcquire(String key, long now) {
+            Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+            while (true) {
+                AtomicLong tat = stripe.buckets.get(key);
+                if (tat == null) {
+                    if (stripe.buckets.size() >= maxPerStripe) {
+                        evictOldest(stripe);
+                    }
+                    tat = stripe.buckets.computeIfAbsent(key, k -> {
+                        AtomicLong created = new AtomicLong(now);
+                        stripe.order.add(new Slot(k, created));
+                        return created;
+                    });
+                }
+                long wait = acquire(tat, now);
+                if (wait >= 0) {
+                    return wait;
+                }
+                stripe.buckets.remove(key, tat); // retired under us; start again with a fresh bucket
+            }
+        }
+
+        /** Like tryAcquire on one bucket; -1 if the bucket has been retired. */
+        private long acquire(AtomicLong tat, long now) {
+            while (true) {
+                long current = tat.get();
+                if (current == RETIRED) {
+                    return -1;
+                }
+                long base = Math.max(current, now);
+                long wait = base - now - toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (tat.compareAndSet(current, base + emissionNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        /** Sweeper: drops refilled buckets and the queue entries of buckets that are gone. */
+        void evictIdle(long now) {
+            for (Stripe stripe : stripes) {
+                for (Map.Entry<String, AtomicLong> e : stripe.buckets.entrySet()) {
+                    long tat = e.getValue().get();
+                    // tat <= now means the bucket has refilled completely
+                    if (tat != RETIRED && tat - now <= 0) {
+                        retire(stripe, e.getKey(), e.getValue(), tat);
+                    }
+                }
+                stripe.order.removeIf(slot -> !stripe.isCurrent(slot));
+            }
+        }
+
+        /**
+         * Evicts the longest-tracked bucket, looking at no more than EVICT_SCAN queue entries:
+         * stale ones are dropped on the way, and one being updated right now is skipped.
+         */
+        private void evictOldest(Stripe stripe) {
+            for (int i = 0; i < EVICT_SCAN; i++) {
+                Slot slot = stripe.order.poll();
+                if (slot == null) {
+                    return;
+                }
+                long tat = slot.tat().get();
+                if (tat != RETIRED && stripe.isCurrent(slot) && retire(stripe, slot.key(), slot.tat(), tat)) {
+                    evictedWhenFull.increment();
+                    return;
+                }
+                if (stripe.isCurrent(slot)) {
+                    stripe.order.add(slot); // lost a race with an acquire; keep it tracked
+                }
+            }
+        }
+
+        /** Removes the bucket only if it still holds {@code expected}, so no concurrent update is lost. */
+        private static boolean retire(Stripe stripe, String key, AtomicLong tat, long expected) {
+            if (!tat.compareAndSet(expected, RETIRED)) {
+                return false;
+            }
+            stripe.buckets.remove(key, tat);
+            return true;
+        }
+
+        int size() {
+            int n = 0;
+            for (Stripe stripe : stripes) {
+                n += stripe.buckets.size();
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.maxcogito.auth.security;
+
+import com.maxcogito.auth.repo.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Re-encodes a password whose hash was made with outdated parameters, off the login path.
+ *
+ * Triggered after a successful login (the only time the raw password is known). The write only
+ * succeeds if the stored hash is still the one that was verified, so a concurrent password change
+ * always wins. Upgrades that cannot be queued are simply dropped; the next login retries.
+ */
+@Component
+public class PasswordUpgradeService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordUpgradeService.class);
+
+    private final UserRepository userRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final boolean enabled;
+    private final ThreadPoolExecutor worker;
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder upgraded = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public PasswordUpgradeService(UserRepository userRepository,
+                                  PasswordEncoder passwordEncoder,
+                                  @Value("${app.security.password-hashing.rehash-on-login:true}") boolean enabled) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.enabled = enabled;
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000),
+                r -> {
+                    Thread t = new Thread(r, "password-upgrade");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public boolean needsUpgrade(String encodedPassword) {
+        return enabled && encodedPassword != null && passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /** Queue a rehash for a user who just proved knowledge of {@code rawPassword}. */
+    public void upgradeAsync(UUID userId, String verifiedHash, String rawPassword) {
+        if (!enabled || userId == null || !pending.add(userId)) {
+            return;
+        }
+        try {
+            worker.execute(() -> {
+                try {
+                    String newHash = passwordEncoder.encode(rawPassword);
+                    if (userRepository.updatePasswordHashIfUnchanged(userId, verifiedHash, newHash) == 1) {
+                        upgraded.increment();
+                    } else {
+                        skipped.increment(); // changed meanwhile; leave it alone
+                    }
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    log.debug("Password rehash for {} failed: {}", userId, e.getMessage());
+                } finally {
+                    pending.remove(userId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(userId);
+            skipped.increment();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("queued", worker.getQueue().size());
+        out.put("upgraded", upgraded.sum());
+        out.put("skipped", skipped.sum());
+        out.put("failed", failed.sum());
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        worker.shutdown();
+    }
+}
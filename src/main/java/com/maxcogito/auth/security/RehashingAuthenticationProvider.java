@@ -0,0 +1,31 @@
+package com.maxcogito.auth.security;
+
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * DaoAuthenticationProvider that upgrades outdated password hashes asynchronously after a
+ * successful login, instead of the built-in UserDetailsPasswordService path which re-encodes
+ * on the request thread.
+ */
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final PasswordUpgradeService passwordUpgrades;
+
+    public RehashingAuthenticationProvider(PasswordUpgradeService passwordUpgrades) {
+        this.passwordUpgrades = passwordUpgrades;
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication,
+                                                         UserDetails user) {
+        if (user instanceof UserDetailsImpl details
+                && authentication.getCredentials() != null
+                && passwordUpgrades.needsUpgrade(user.getPassword())) {
+            passwordUpgrades.upgradeAsync(details.getId(), user.getPassword(),
+                    authentication.getCredentials().toString());
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
@@ -0,0 +1,72 @@
+package com.maxcogito.auth.security;
+
+import io.jsonwebtoken.io.Decoders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * AES-256-GCM for small secrets kept in the database (signing keys, MFA secrets).
+ * The key is derived from app.jwt.secret unless app.crypto.key is set.
+ * Output is base64(iv || ciphertext+tag).
+ */
+@Component
+public class SecretCipher {
+
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+
+    public SecretCipher(@Value("${app.crypto.key:}") String keyBase64,
+                        @Value("${app.jwt.secret}") String jwtSecretBase64) {
+        byte[] material = !keyBase64.isBlank()
+                ? Decoders.BASE64.decode(keyBase64)
+                : Decoders.BASE64.decode(jwtSecretBase64);
+        this.key = new SecretKeySpec(sha256("secret-cipher:v1", material), "AES");
+    }
+
+    public String encrypt(byte[] plain) {
+        try {
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+            Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+            c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            byte[] ct = c.doFinal(plain);
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(iv.length + ct.length).put(iv).put(ct).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Encryption failed", e);
+        }
+    }
+
+    public byte[] decrypt(String encoded) {
+        try {
+            byte[] all = Base64.getDecoder().decode(encoded);
+            Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+            c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, all, 0, IV_BYTES));
+            return c.doFinal(all, IV_BYTES, all.length - IV_BYTES);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Decryption failed", e);
+        }
+    }
+
+    private static byte[] sha256(String label, byte[] material) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(label.getBytes(StandardCharsets.US_ASCII));
+            return md.digest(material);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.maxcogito.auth.security;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -26,7 +27,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http,
+                                           DaoAuthenticationProvider daoAuthenticationProvider) throws Exception {
         http.csrf(csrf -> csrf.disable())
                 .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
@@ -36,6 +38,8 @@ public class SecurityConfig {
                                 "/actuator/health",
                                 "/api/v1/test/**",
                                 "/api/v1/dev/**",
+                                // Public signing keys for local token verification
+                                "/.well-known/jwks.json",
                                // "/api/v1/payments/**",
                                 // Webhook from mock-payment-gateway should NOT require JWT
                                 "/api/v1/payments/webhook/**")
@@ -48,17 +52,18 @@ public class SecurityConfig {
                         // Everything else: must be authenticated (JWT)
                         .anyRequest().authenticated()
                 )
-                .authenticationProvider(daoAuthenticationProvider())
+                .authenticationProvider(daoAuthenticationProvider)
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
     }
 
     @Bean
-    public DaoAuthenticationProvider daoAuthenticationProvider() {
-        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+    public DaoAuthenticationProvider daoAuthenticationProvider(PasswordEncoder passwordEncoder,
+                                                               PasswordUpgradeService passwordUpgrades) {
+        DaoAuthenticationProvider provider = new RehashingAuthenticationProvider(passwordUpgrades);
         provider.setUserDetailsService(userDetailsService);
-        provider.setPasswordEncoder(passwordEncoder());
+        provider.setPasswordEncoder(passwordEncoder);
         return provider;
     }
 
@@ -67,9 +72,18 @@ public class SecurityConfig {
         return configuration.getAuthenticationManager();
     }
 
+    /**
+     * BCrypt at the calibrated strength, on a dedicated pool (threads=0 means one per core);
+     * see BcryptCalibration and BoundedPasswordEncoder.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            BcryptCalibration calibration,
+            @Value("${app.security.password-hashing.threads:0}") int threads,
+            @Value("${app.security.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${app.security.password-hashing.max-wait-ms:2000}") long maxWaitMs) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(calibration.strength()),
+                threads, queueCapacity, maxWaitMs);
     }
 }
 
@@ -0,0 +1,184 @@
+package com.maxcogito.auth.security;
+
+import com.maxcogito.auth.repo.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory view of app_user.token_epoch used to revoke access tokens without I/O per request.
+ *
+ * Every access token carries the epoch it was issued with ("tep"). Revoke-all, password reset,
+ * role changes and deletes bump the user's epoch in the database; this node applies its own bumps
+ * on commit and picks up other nodes' bumps by polling for rows changed since the last refresh,
+ * so a revocation is effective cluster-wide within one refresh interval.
+ *
+ * Only users whose epoch was ever bumped have an entry; a missing entry means epoch 0.
+ * ConcurrentHashMap is lock-striped internally, so lookups never contend.
+ */
+@Component
+public class TokenEpochRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenEpochRegistry.class);
+
+    /** Epoch recorded for deleted users: no token can ever be current again. */
+    static final long DELETED = Long.MAX_VALUE;
+
+    // Re-read a little behind the watermark to cover clock skew and late commits on other nodes
+    private static final Duration OVERLAP = Duration.ofSeconds(30);
+
+    private final UserRepository userRepository;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration tombstoneRetention;
+
+    private final ConcurrentHashMap<UUID, Long> epochs = new ConcurrentHashMap<>();
+    private volatile Instant watermark = Instant.EPOCH;
+
+    public TokenEpochRegistry(UserRepository userRepository,
+                              Clock clock,
+                              @Value("${app.jwt.epoch.enabled:true}") boolean enabled,
+                              @Value("${app.jwt.expirationMinutes}") long accessTokenMinutes) {
+        this.userRepository = userRepository;
+        this.clock = clock;
+        this.enabled = enabled;
+        // a tombstone only has to outlive the longest-lived access token
+        this.tombstoneRetention = Duration.ofMinutes(accessTokenMinutes).plus(OVERLAP);
+    }
+
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            refresh();
+        }
+    }
+
+    /** O(1), no I/O: is a token issued with {@code tokenEpoch} still valid for this user? */
+    public boolean isCurrent(UUID userId, long tokenEpoch) {
+        if (!enabled || userId == null) {
+            return true;
+        }
+        Long current = epochs.get(userId);
+        return current == null || tokenEpoch >= current;
+    }
+
+    /** Epoch to embed in a newly issued access token; reads the authoritative DB value. */
+    public long issueEpoch(UUID userId) {
+        if (!enabled || userId == null) {
+            return 0L;
+        }
+        long epoch = userRepository.findTokenEpochById(userId).orElse(0L);
+        observe(userId, epoch);
+        return epoch;
+    }
+
+    /** Invalidate every access token issued to this user so far. */
+    @Transactional
+    public void bump(UUID userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        userRepository.bumpTokenEpoch(userId, Instant.now(clock));
+        long epoch = userRepository.findTokenEpochById(userId).orElse(0L);
+        afterCommit(() -> observe(userId, epoch));
+    }
+
+    /** {@link #bump} for many users with one update. */
+    @Transactional
+    public void bumpAll(Collection<UUID> userIds) {
+        if (!enabled || userIds.isEmpty()) {
+            return;
+        }
+        userRepository.bumpTokenEpochs(userIds, Instant.now(clock));
+        List<Object[]> rows = userRepository.findTokenEpochsByIdIn(userIds);
+        afterCommit(() -> rows.forEach(r -> observe((UUID) r[0], ((Number) r[1]).longValue())));
+    }
+
+    /** The user row is about to be deleted: tombstone it so other nodes learn about it too. */
+    @Transactional
+    public void markDeleted(UUID userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        userRepository.insertTokenTombstone(userId, Instant.now(clock));
+        afterCommit(() -> epochs.put(userId, DELETED));
+    }
+
+    /** Incremental poll: only rows whose epoch changed since the previous refresh. */
+    @Scheduled(fixedDelayString = "${app.jwt.epoch.refresh-ms:5000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Instant since = watermark.minus(OVERLAP);
+            Instant newest = watermark;
+            for (Object[] row : userRepository.findTokenEpochsChangedSince(since)) {
+                observe((UUID) row[0], ((Number) row[1]).longValue());
+                Instant changedAt = (Instant) row[2];
+                if (changedAt != null && changedAt.isAfter(newest)) {
+                    newest = changedAt;
+                }
+            }
+            watermark = newest;
+
+            Instant now = Instant.now(clock);
+            for (String id : userRepository.findTokenTombstoneIdsSince(now.minus(tombstoneRetention))) {
+                epochs.put(UUID.fromString(id), DELETED);
+            }
+        } catch (Exception e) {
+            // keep serving from the last known state; next poll retries
+            log.warn("Token epoch refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.jwt.epoch.tombstone-cleanup-cron:0 */30 * * * *}")
+    @Transactional
+    public void purgeTombstones() {
+        if (enabled) {
+            userRepository.deleteTokenTombstonesBefore(Instant.now(clock).minus(tombstoneRetention));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("trackedUsers", epochs.size());
+        out.put("watermark", watermark.toString());
+        return out;
+    }
+
+    private void observe(UUID userId, long epoch) {
+        epochs.merge(userId, epoch, Math::max);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a rolled-back bump must not leave this node ahead of the database
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.maxcogito.auth.security;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of already-verified JWT claims, so a token that a client presents
+ * over and over is only signature-checked and JSON-parsed once.
+ *
+ * Entries are keyed by a SHA-256 digest of the compact token (the raw token is never
+ * kept as a map key) and expire after the configured TTL or at the token's own
+ * {@code exp}, whichever comes first.
+ */
+@Component
+public class VerifiedClaimsCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public VerifiedClaimsCache(@Value("${app.jwt.claims-cache.enabled:true}") boolean enabled,
+                               @Value("${app.jwt.claims-cache.max-entries:10000}") int maxEntries,
+                               @Value("${app.jwt.claims-cache.ttl-seconds:300}") long ttlSeconds,
+                               Clock clock) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = ttlSeconds * 1000L;
+        this.clock = clock;
+    }
+
+    /** Returns the cached claims for this token, or null if it has to be verified. */
+    public Claims get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        String key = digest(token);
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        if (e.expiresAtMs <= clock.millis()) {
+            if (entries.remove(key, e)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.claims;
+    }
+
+    /** Remember claims that were just verified by {@link JwtService#parseClaims(String)}. */
+    public void put(String token, Claims claims) {
+        if (!enabled) {
+            return;
+        }
+        long now = clock.millis();
+        long expiresAt = now + ttlMs;
+        Date exp = claims.getExpiration();
+        if (exp != null) {
+            expiresAt = Math.min(expiresAt, exp.getTime());
+        }
+        if (expiresAt <= now) {
+            return;
+        }
+
+        if (entries.size() >= maxEntries) {
+            evictExpired();
+            if (entries.size() >= maxEntries) {
+                // still full of live tokens: drop ~10% to make room instead of evicting on every put
+                evict(Math.max(1, maxEntries / 10));
+            }
+        }
+        entries.put(digest(token), new Entry(claims, expiresAt));
+    }
+
+    /** Drop everything, e.g. after a signing key change. */
+    public void clear() {
+        int n = entries.size();
+        entries.clear();
+        evictions.add(n);
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.claims-cache.sweep-ms:30000}")
+    public void evictExpired() {
+        long now = clock.millis();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().getValue().expiresAtMs <= now) {
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("size", entries.size());
+        out.put("maxEntries", maxEntries);
+        out.put("hits", h);
+        out.put("misses", m);
+        out.put("evictions", evictions.sum());
+        out.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        return out;
+    }
+
+    private void evict(int count) {
+        Iterator<String> it = entries.keySet().iterator();
+        while (count-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] out = md.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(out);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Entry(Claims claims, long expiresAtMs) {}
+}
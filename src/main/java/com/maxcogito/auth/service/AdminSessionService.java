@@ -5,6 +5,7 @@ package com.maxcogito.auth.service;
 import com.maxcogito.auth.dto.ActiveUserSessionDto;
 import com.maxcogito.auth.repo.RefreshTokenRepository;
 import com.maxcogito.auth.repo.UserRepository;
+import com.maxcogito.auth.security.TokenEpochRegistry;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -18,11 +19,14 @@ public class AdminSessionService {
 
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
+    private final TokenEpochRegistry tokenEpochs;
 
     public AdminSessionService(RefreshTokenRepository refreshTokenRepository,
-                               UserRepository userRepository) {
+                               UserRepository userRepository,
+                               TokenEpochRegistry tokenEpochs) {
         this.refreshTokenRepository = refreshTokenRepository;
         this.userRepository = userRepository;
+        this.tokenEpochs = tokenEpochs;
     }
 
     public long countActiveUsers() {
@@ -72,13 +76,22 @@ public class AdminSessionService {
     }
 
     /**
-     * Revokes all active refresh tokens for a given user (logout everywhere).
+     * Revokes all active refresh tokens for a given user (logout everywhere)
+     * and bumps the token epoch so outstanding access tokens stop working too.
      * Returns the number of tokens that were marked revoked.
      */
     @Transactional
     public int revokeAllTokensForUser(UUID userId) {
+        tokenEpochs.bump(userId);
         return refreshTokenRepository.revokeAllForUser(userId, Instant.now());
     }
 
+    /** Revoke everything for the user, then purge revoked/expired rows. */
+    @Transactional
+    public int revokeAndPurgeTokensForUser(UUID userId) {
+        revokeAllTokensForUser(userId);
+        return refreshTokenRepository.deleteRevokedOrExpired(Instant.now());
+    }
+
 
 }
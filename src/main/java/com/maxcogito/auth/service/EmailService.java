@@ -4,6 +4,8 @@ import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 public class EmailService {
     private final GraphMailService graph;
@@ -13,11 +15,19 @@ public class EmailService {
     }
 
     public void send(String to, String subject, String bodyPlainOrHtml) {
-        String html = bodyPlainOrHtml.contains("<")
+        graph.sendHtml(to, subject, toHtml(bodyPlainOrHtml));
+    }
+
+    /** Batched with other mail when Graph batching is on; see GraphMailService#sendHtmlAsync. */
+    public CompletableFuture<Void> sendAsync(String to, String subject, String bodyPlainOrHtml) {
+        return graph.sendHtmlAsync(to, subject, toHtml(bodyPlainOrHtml));
+    }
+
+    private static String toHtml(String bodyPlainOrHtml) {
+        return bodyPlainOrHtml.contains("<")
                 ? bodyPlainOrHtml
                 : "<html><body><pre style=\"font-family:inherit\">" +
                 escape(bodyPlainOrHtml) + "</pre></body></html>";
-        graph.sendHtml(to, subject, html);
     }
 
     private static String escape(String s) {
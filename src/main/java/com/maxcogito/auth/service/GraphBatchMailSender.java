@@ -0,0 +1,299 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.config.OutboundHttpClients;
+import com.maxcogito.auth.ms.AadTokenProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces sendMail calls into Graph JSON batches (POST /$batch, at most 20 requests each).
+ *
+ * A message waits at most {@code window-ms} for company; a full batch goes out at once. Each
+ * caller gets a future completed from its own item in the batch response. Items answered with
+ * 429 or 503 are resubmitted after their Retry-After (or exponential backoff) up to
+ * {@code max-retries} times; if the whole batch is throttled, every item is. A retry that would
+ * start more than {@code retry-budget-ms} after submit fails the item instead, so the outbox row's
+ * lease (app.outbox.lease-seconds) cannot run out while its mail is still pending here.
+ */
+@Component
+public class GraphBatchMailSender implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(GraphBatchMailSender.class);
+
+    /** Graph rejects batches with more than 20 requests. */
+    static final int GRAPH_MAX_BATCH = 20;
+
+    private final RestTemplate rest;
+    private final AadTokenProvider tokenProvider;
+    private final String baseUrl;
+    private final String senderAddress;
+    private final boolean enabled;
+    private final long windowMs;
+    private final int maxBatch;
+    private final int maxRetries;
+    private final long retryBudgetNanos;
+    private final int queueCapacity;
+
+    private final ConcurrentLinkedQueue<Item> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public GraphBatchMailSender(AadTokenProvider tokenProvider,
+                                OutboundHttpClients httpClients,
+                                @Value("${msgraph.baseUrl:https://graph.microsoft.com/v1.0}") String baseUrl,
+                                @Value("${msgraph.senderAddress}") String senderAddress,
+                                @Value("${msgraph.batch.enabled:true}") boolean enabled,
+                                @Value("${msgraph.batch.window-ms:50}") long windowMs,
+                                @Value("${msgraph.batch.max-size:20}") int maxBatch,
+                                @Value("${msgraph.batch.max-retries:3}") int maxRetries,
+                                @Value("${msgraph.batch.retry-budget-ms:60000}") long retryBudgetMs,
+                                @Value("${msgraph.batch.queue-capacity:2000}") int queueCapacity) {
+        this.tokenProvider = tokenProvider;
+        this.rest = httpClients.restTemplate(OutboundHttpClients.GRAPH);
+        this.baseUrl = baseUrl;
+        this.senderAddress = senderAddress;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.maxBatch = Math.max(1, Math.min(maxBatch, GRAPH_MAX_BATCH));
+        this.maxRetries = maxRetries;
+        this.retryBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryBudgetMs));
+        this.queueCapacity = queueCapacity;
+        ScheduledThreadPoolExecutor exec = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "graph-batch");
+            t.setDaemon(true);
+            return t;
+        });
+        exec.setRemoveOnCancelPolicy(true);
+        this.scheduler = exec;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Queue one sendMail; completes when Graph has accepted (or definitively rejected) it. */
+    public CompletableFuture<Void> submit(Map<String, Object> sendMailPayload) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (pendingCount.incrementAndGet() > queueCapacity) {
+            pendingCount.decrementAndGet();
+            result.completeExceptionally(new IllegalStateException("Graph batch queue full"));
+            return result;
+        }
+        pending.add(new Item(sendMailPayload, result, System.nanoTime() + retryBudgetNanos));
+        scheduleFlush(pendingCount.get() >= maxBatch ? 0 : windowMs);
+        return result;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("pending", pendingCount.get());
+        out.put("batches", batches.sum());
+        out.put("sent", sent.sum());
+        out.put("throttled", throttled.sum());
+        out.put("failed", failed.sum());
+        long b = batches.sum();
+        out.put("avgBatchSize", b == 0 ? 0.0 : (double) (sent.sum() + failed.sum() + throttled.sum()) / b);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        Item item;
+        while ((item = pending.poll()) != null) {
+            item.result.completeExceptionally(new IllegalStateException("Shutting down"));
+        }
+    }
+
+    // ---------------------------------------------------------------------
+
+    private void scheduleFlush(long delayMs) {
+        if (delayMs == 0) {
+            scheduler.execute(this::flush); // a full batch does not wait for the timer
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Runs on the single graph-batch thread: drains everything queued, one batch at a time. */
+    private void flush() {
+        while (true) {
+            List<Item> batch = new ArrayList<>(maxBatch);
+            Item item;
+            while (batch.size() < maxBatch && (item = pending.poll()) != null) {
+                pendingCount.decrementAndGet();
+                batch.add(item);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                send(batch, true);
+            } catch (RuntimeException e) {
+                for (Item i : batch) {
+                    fail(i, e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void send(List<Item> batch, boolean retryIfUnauthorized) {
+        List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Map<String, Object> r = new LinkedHashMap<>();
+            r.put("id", String.valueOf(i));
+            r.put("method", "POST");
+            r.put("url", "/users/" + senderAddress + "/sendMail");
+            r.put("headers", Map.of("Content-Type", "application/json"));
+            r.put("body", batch.get(i).payload);
+            requests.add(r);
+        }
+        HttpHeaders h = new HttpHeaders();
+        h.setContentType(MediaType.APPLICATION_JSON);
+        String bearer = tokenProvider.getBearer();
+        h.setBearerAuth(bearer);
+
+        Map<String, Object> response;
+        try {
+            response = rest.exchange(baseUrl + "/$batch", HttpMethod.POST,
+                    new HttpEntity<>(Map.of("requests", requests), h), Map.class).getBody();
+            batches.increment();
+        } catch (HttpStatusCodeException e) {
+            int status = e.getStatusCode().value();
+            if (status == 401 && retryIfUnauthorized) {
+                tokenProvider.refresh(bearer);
+                send(batch, false);
+                return;
+            }
+            if (status == 429 || status == 503) {
+                long delay = retryAfterMs(e.getResponseHeaders() != null
+                        ? e.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER) : null, batch.get(0).attempts);
+                for (Item i : batch) {
+                    retryLater(i, delay, status);
+                }
+                return;
+            }
+            throw e;
+        }
+
+        Map<String, Map<String, Object>> byId = new HashMap<>();
+        Object responses = response != null ? response.get("responses") : null;
+        if (responses instanceof List<?> list) {
+            for (Object o : list) {
+                if (o instanceof Map<?, ?> m) {
+                    byId.put(String.valueOf(m.get("id")), (Map<String, Object>) m);
+                }
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Item item = batch.get(i);
+            Map<String, Object> r = byId.get(String.valueOf(i));
+            int status = r != null && r.get("status") instanceof Number n ? n.intValue() : -1;
+            if (status >= 200 && status < 300) {
+                sent.increment();
+                item.result.complete(null);
+            } else if (status == 429 || status == 503) {
+                retryLater(item, retryAfterMs(header(r, HttpHeaders.RETRY_AFTER), item.attempts), status);
+            } else {
+                fail(item, new IllegalStateException("Graph sendMail failed with status " + status
+                        + (r != null && r.get("body") != null ? ": " + r.get("body") : "")));
+            }
+        }
+    }
+
+    private void retryLater(Item item, long delayMs, int status) {
+        throttled.increment();
+        if (++item.attempts > maxRetries) {
+            fail(item, new IllegalStateException("Graph sendMail still throttled (" + status + ") after "
+                    + maxRetries + " retries"));
+            return;
+        }
+        if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs) - item.deadlineNanos > 0) {
+            // the outbox backs off and claims the row again instead
+            fail(item, new IllegalStateException("Graph sendMail throttled (" + status + "), Retry-After "
+                    + delayMs + " ms exceeds the retry budget"));
+            return;
+        }
+        scheduler.schedule(() -> {
+            pendingCount.incrementAndGet();
+            pending.add(item);
+            scheduleFlush(pendingCount.get() >= maxBatch ? 0 : windowMs);
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void fail(Item item, Exception e) {
+        failed.increment();
+        log.debug("Graph batch item failed: {}", e.getMessage());
+        item.result.completeExceptionally(e);
+    }
+
+    /** Retry-After is seconds in Graph responses; fall back to 1s, 2s, 4s... if absent. */
+    private static long retryAfterMs(String retryAfter, int attempts) {
+        if (retryAfter != null) {
+            try {
+                return Math.max(0, Long.parseLong(retryAfter.trim())) * 1000L;
+            } catch (NumberFormatException ignored) {
+                // HTTP-date form is not used by Graph
+            }
+        }
+        return 1000L << Math.min(attempts, 6);
+    }
+
+    private static String header(Map<String, Object> response, String name) {
+        if (response != null && response.get("headers") instanceof Map<?, ?> headers) {
+            for (Map.Entry<?, ?> e : headers.entrySet()) {
+                if (name.equalsIgnoreCase(String.valueOf(e.getKey()))) {
+                    return String.valueOf(e.getValue());
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final class Item {
+        final Map<String, Object> payload;
+        final CompletableFuture<Void> result;
+        final long deadlineNanos; // no retry starts after this
+        int attempts; // only touched on the graph-batch thread
+
+        Item(Map<String, Object> payload, CompletableFuture<Void> result, long deadlineNanos) {
+            this.payload = payload;
+            this.result = result;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
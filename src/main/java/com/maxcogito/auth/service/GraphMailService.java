@@ -1,6 +1,7 @@
 package com.maxcogito.auth.service;
 
 
+import com.maxcogito.auth.config.OutboundHttpClients;
 import com.maxcogito.auth.ms.AadTokenProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
@@ -14,23 +15,51 @@ import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class GraphMailService {
 
-    private final RestTemplate rest = new RestTemplate();
+    private final RestTemplate rest;
     private final AadTokenProvider tokenProvider;
+    private final GraphBatchMailSender batchSender;
 
     @Value("${msgraph.senderAddress}")
     private String senderAddress; // e.g. noreply@yourdomain.com
 
-    public GraphMailService(AadTokenProvider tokenProvider) {
+    @Value("${msgraph.baseUrl:https://graph.microsoft.com/v1.0}")
+    private String baseUrl;
+
+    public GraphMailService(AadTokenProvider tokenProvider, GraphBatchMailSender batchSender,
+                            OutboundHttpClients httpClients) {
+        this.rest = httpClients.restTemplate(OutboundHttpClients.GRAPH);
         this.tokenProvider = tokenProvider;
+        this.batchSender = batchSender;
     }
 
     public void sendHtml(String to, String subject, String html) {
-        var url = "https://graph.microsoft.com/v1.0/users/" + senderAddress + "/sendMail";
-        var body = Map.of(
+        var url = baseUrl + "/users/" + senderAddress + "/sendMail";
+        doSend(url, sendMailPayload(to, subject, html), /*retryIfUnauthorized=*/true);
+    }
+
+    /**
+     * Same message, but coalesced with others into a Graph $batch when msgraph.batch.enabled
+     * (the default); completes once Graph has accepted it.
+     */
+    public CompletableFuture<Void> sendHtmlAsync(String to, String subject, String html) {
+        if (batchSender.isEnabled()) {
+            return batchSender.submit(sendMailPayload(to, subject, html));
+        }
+        try {
+            sendHtml(to, subject, html);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Map<String, Object> sendMailPayload(String to, String subject, String html) {
+        return Map.of(
                 "message", Map.of(
                         "subject", subject,
                         "body", Map.of(
@@ -43,20 +72,19 @@ public class GraphMailService {
                 ),
                 "saveToSentItems", Boolean.FALSE
         );
-
-        doSend(url, body, /*retryIfUnauthorized=*/true);
     }
 
     private void doSend(String url, Object payload, boolean retry) {
         HttpHeaders h = new HttpHeaders();
         h.setContentType(MediaType.APPLICATION_JSON);
-        h.setBearerAuth(tokenProvider.getBearer());
+        String bearer = tokenProvider.getBearer();
+        h.setBearerAuth(bearer);
 
         try {
             rest.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, h), Void.class);
         } catch (HttpClientErrorException.Unauthorized e) {
             if (retry) {
-                tokenProvider.refresh(); // force refresh
+                tokenProvider.refresh(bearer); // force refresh
                 doSend(url, payload, false);
             } else {
                 throw e;
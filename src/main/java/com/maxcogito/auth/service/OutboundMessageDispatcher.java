@@ -0,0 +1,280 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.OutboundMessage;
+import com.maxcogito.auth.mfa.SmsService;
+import com.maxcogito.auth.repo.OutboundMessageRepository;
+import com.maxcogito.auth.security.SecretCipher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends outbound_message rows on a bounded worker pool.
+ *
+ * A poll claims at most as many due rows as there are free in-flight slots (SELECT ... FOR UPDATE
+ * SKIP LOCKED, then a lease in locked_until), so every node can poll and none over-commits.
+ * Email goes through the asynchronous Graph path, so mail claimed in the same poll is coalesced
+ * into $batch requests rather than holding a worker each.
+ * Failures are retried with exponential backoff and jitter; after {@code max-attempts} the row
+ * is dead-lettered (status DEAD) and kept for inspection. A node that dies mid-send leaves a
+ * lease that expires, after which the row is claimed again: delivery is at-least-once.
+ */
+@Component
+public class OutboundMessageDispatcher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundMessageDispatcher.class);
+
+    private final OutboundMessageRepository repo;
+    private final SecretCipher cipher;
+    private final EmailService email;
+    private final SmsService sms;
+    private final TransactionTemplate tx;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final Duration sentRetention;
+
+    private final ThreadPoolExecutor workers;
+    private final int maxInFlight;
+    private final Semaphore inFlight; // one permit per claimed message until its outcome is recorded
+    private final ExecutorService poller;
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public OutboundMessageDispatcher(OutboundMessageRepository repo,
+                                     SecretCipher cipher,
+                                     EmailService email,
+                                     SmsService sms,
+                                     PlatformTransactionManager transactionManager,
+                                     Clock clock,
+                                     @Value("${app.outbox.enabled:true}") boolean enabled,
+                                     @Value("${app.outbox.threads:4}") int threads,
+                                     @Value("${app.outbox.queue-capacity:100}") int queueCapacity,
+                                     @Value("${app.outbox.max-attempts:8}") int maxAttempts,
+                                     @Value("${app.outbox.lease-seconds:120}") long leaseSeconds,
+                                     @Value("${app.outbox.backoff-base-ms:2000}") long backoffBaseMs,
+                                     @Value("${app.outbox.backoff-max-ms:600000}") long backoffMaxMs,
+                                     @Value("${app.outbox.sent-retention-hours:24}") long sentRetentionHours,
+                                     @Value("${msgraph.batch.retry-budget-ms:60000}") long graphRetryBudgetMs,
+                                     @Value("${app.http.graph.read-timeout-ms:10000}") long graphReadTimeoutMs) {
+        // mail still retrying in GraphBatchMailSender when the lease runs out is claimed and sent
+        // again; the last retry may start at the end of the budget and make two calls (401 refresh)
+        if (TimeUnit.SECONDS.toMillis(leaseSeconds) <= graphRetryBudgetMs + 2 * graphReadTimeoutMs) {
+            throw new IllegalStateException("app.outbox.lease-seconds (" + leaseSeconds + "s) must exceed "
+                    + "msgraph.batch.retry-budget-ms plus twice app.http.graph.read-timeout-ms ("
+                    + (graphRetryBudgetMs + 2 * graphReadTimeoutMs) + " ms)");
+        }
+        this.repo = repo;
+        this.cipher = cipher;
+        this.email = email;
+        this.sms = sms;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.sentRetention = Duration.ofHours(sentRetentionHours);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                daemon("outbox-send"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.poller = Executors.newSingleThreadExecutor(daemon("outbox-poll"));
+        // never more claimed messages than tasks the pool can hold, so execute() cannot reject
+        this.maxInFlight = threads + queueCapacity;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /** Poll soon, off the caller's thread (called after an enqueue commits). */
+    public void wakeUp() {
+        if (enabled && wakeUpPending.compareAndSet(false, true)) {
+            try {
+                poller.execute(() -> {
+                    wakeUpPending.set(false);
+                    poll();
+                });
+            } catch (RuntimeException e) {
+                wakeUpPending.set(false); // shutting down; the scheduled poll covers it
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-ms:1000}")
+    public void poll() {
+        if (!enabled || !pollLock.tryLock()) {
+            return;
+        }
+        try {
+            int room;
+            while ((room = inFlight.availablePermits()) > 0) {
+                List<OutboundMessage> claimed = claim(room);
+                inFlight.acquireUninterruptibly(claimed.size()); // only this thread acquires
+                for (OutboundMessage m : claimed) {
+                    workers.execute(() -> deliver(m));
+                }
+                if (claimed.size() < room) {
+                    break; // nothing more is due
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Outbox poll failed: {}", e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    @Scheduled(cron = "${app.outbox.cleanup-cron:0 15 * * * *}")
+    public void purgeSent() {
+        if (enabled) {
+            repo.deleteSentBefore(Instant.now(clock).minus(sentRetention));
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("active", workers.getActiveCount());
+        out.put("queued", workers.getQueue().size());
+        out.put("inFlight", maxInFlight - inFlight.availablePermits());
+        out.put("sent", sent.sum());
+        out.put("retried", retried.sum());
+        out.put("deadLettered", deadLettered.sum());
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (Object[] row : repo.countByStatus()) {
+            byStatus.put(String.valueOf(row[0]), ((Number) row[1]).longValue());
+        }
+        out.put("rows", byStatus);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        poller.shutdownNow();
+        workers.shutdown();
+    }
+
+    // ---------------------------------------------------------------------
+
+    private List<OutboundMessage> claim(int limit) {
+        return tx.execute(status -> {
+            Instant now = Instant.now(clock);
+            List<OutboundMessage> due = repo.lockDue(now, limit);
+            for (OutboundMessage m : due) {
+                m.setStatus(OutboundMessage.Status.SENDING);
+                m.setAttempts(m.getAttempts() + 1);
+                m.setLockedUntil(now.plus(lease));
+            }
+            return due; // flushed on commit
+        });
+    }
+
+    private void deliver(OutboundMessage m) {
+        try {
+            String body = new String(cipher.decrypt(m.getBodyEnc()), StandardCharsets.UTF_8);
+            switch (m.getChannel()) {
+                case EMAIL -> {
+                    // completes on the graph-batch thread; record the outcome back on a worker
+                    email.sendAsync(m.getRecipient(), m.getSubject(), body)
+                            .whenCompleteAsync((ok, e) -> finish(m, e), this::runOnWorker);
+                    return;
+                }
+                case SMS -> sms.send(m.getRecipient(), body);
+            }
+            finish(m, null);
+        } catch (Exception e) {
+            finish(m, e);
+        }
+    }
+
+    private void finish(OutboundMessage m, Throwable failure) {
+        try {
+            if (failure == null) {
+                repo.markSent(m.getId(), Instant.now(clock));
+                sent.increment();
+            } else {
+                recordFailure(m, failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure);
+            }
+        } catch (RuntimeException ex) {
+            // the lease expires and the row is claimed again
+            log.warn("Could not record outbound message {} result: {}", m.getId(), ex.getMessage());
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void recordFailure(OutboundMessage m, Throwable e) {
+        String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+        if (m.getAttempts() >= maxAttempts) {
+            repo.markDead(m.getId(), error);
+            deadLettered.increment();
+            log.warn("Outbound {} message {} dead-lettered after {} attempts: {}",
+                    m.getChannel(), m.getId(), m.getAttempts(), error);
+        } else {
+            repo.markRetry(m.getId(), Instant.now(clock).plusMillis(backoffMs(m.getAttempts())), error);
+            retried.increment();
+        }
+    }
+
+    private void runOnWorker(Runnable r) {
+        try {
+            workers.execute(r);
+        } catch (RejectedExecutionException e) {
+            r.run(); // pool saturated or shutting down: record the outcome on the calling thread
+        }
+    }
+
+    /** Exponential backoff with jitter in [50%, 100%] of the step, so retries don't synchronise. */
+    private long backoffMs(int attempts) {
+        long step = backoffBaseMs << Math.min(attempts - 1, 20);
+        long capped = Math.min(backoffMaxMs, step);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private static String truncate(String s) {
+        return s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
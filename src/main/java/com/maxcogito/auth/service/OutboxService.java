@@ -0,0 +1,72 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.OutboundMessage;
+import com.maxcogito.auth.repo.OutboundMessageRepository;
+import com.maxcogito.auth.security.SecretCipher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Queues email and SMS in outbound_message instead of calling Graph/Twilio inline.
+ *
+ * The row joins the caller's transaction, so a message exists if and only if the token or
+ * challenge it delivers was committed. OutboundMessageDispatcher sends it after commit.
+ */
+@Service
+public class OutboxService {
+
+    private final OutboundMessageRepository repo;
+    private final SecretCipher cipher;
+    private final OutboundMessageDispatcher dispatcher;
+    private final Clock clock;
+
+    public OutboxService(OutboundMessageRepository repo,
+                         SecretCipher cipher,
+                         OutboundMessageDispatcher dispatcher,
+                         Clock clock) {
+        this.repo = repo;
+        this.cipher = cipher;
+        this.dispatcher = dispatcher;
+        this.clock = clock;
+    }
+
+    /** Plain text bodies are wrapped as HTML on delivery, like {@link EmailService#send}. */
+    @Transactional
+    public void enqueueEmail(String to, String subject, String bodyPlainOrHtml) {
+        enqueue(OutboundMessage.Channel.EMAIL, to, subject, bodyPlainOrHtml);
+    }
+
+    @Transactional
+    public void enqueueSms(String toNumberE164, String body) {
+        enqueue(OutboundMessage.Channel.SMS, toNumberE164, null, body);
+    }
+
+    private void enqueue(OutboundMessage.Channel channel, String to, String subject, String body) {
+        OutboundMessage m = new OutboundMessage();
+        m.setChannel(channel);
+        m.setRecipient(to);
+        m.setSubject(subject);
+        m.setBodyEnc(cipher.encrypt(body.getBytes(StandardCharsets.UTF_8)));
+        m.setStatus(OutboundMessage.Status.PENDING);
+        Instant now = Instant.now(clock);
+        m.setCreatedAt(now);
+        m.setNextAttemptAt(now);
+        repo.save(m);
+
+        // don't wait for the next poll; the row is only visible to the dispatcher after commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp();
+                }
+            });
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.maxcogito.auth.domain.PasswordResetToken;
 import com.maxcogito.auth.mfa.OtpGenerator;
 import com.maxcogito.auth.repo.PasswordResetTokenRepository;
 import com.maxcogito.auth.repo.UserRepository;
+import com.maxcogito.auth.security.TokenEpochRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -23,27 +24,30 @@ public class PasswordResetService {
     private final UserRepository userRepo;
     private final UserService userService;
     private final PasswordResetTokenRepository tokenRepo;
-    private final GraphMailService mailer;
+    private final OutboxService outbox;
     private final PasswordEncoder encoder;
     private final OtpGenerator otpGenerator;
     private final String frontendBaseUrl;
+    private final TokenEpochRegistry tokenEpochs;
 
     private static final Duration TTL = Duration.ofMinutes(15);
 
     public PasswordResetService(UserRepository userRepo,
                                 PasswordResetTokenRepository tokenRepo,
                                 UserService userService,
-                                GraphMailService mailer,
+                                OutboxService outbox,
                                 PasswordEncoder encoder,
                                 OtpGenerator otpGenerator,
+                                TokenEpochRegistry tokenEpochs,
                                 @Value("${app.frontendBaseUrl:http://localhost:5173}") String frontendBaseUrl) {
         this.userRepo = userRepo;
         this.userService = userService;
         this.tokenRepo = tokenRepo;
-        this.mailer = mailer;
+        this.outbox = outbox;
         this.encoder = encoder;
         this.otpGenerator = otpGenerator;
         this.frontendBaseUrl = frontendBaseUrl;
+        this.tokenEpochs = tokenEpochs;
     }
 
     @Transactional
@@ -79,7 +83,7 @@ public class PasswordResetService {
         """.formatted(user.get().getFirstName() == null ? user.get().getUsername() : user.get().getFirstName(),
                 code, TTL.toMinutes());
 
-        mailer.sendHtml(user.get().getEmail(), subject, html);
+        outbox.enqueueEmail(user.get().getEmail(), subject, html);
     }
 
     @Transactional
@@ -112,7 +116,7 @@ public class PasswordResetService {
                 + "Please reset your password by clicking the link: " + link + "\n\n"
                 + "This link expires in " + TTL.toMinutes() + " minutes.";
 
-        mailer.sendHtml(user.get().getEmail(), subject, body);
+        outbox.enqueueEmail(user.get().getEmail(), subject, body);
     }
 
     @Transactional
@@ -131,6 +135,8 @@ public class PasswordResetService {
         var user = prt.getUser();
         user.setPasswordHash(encoder.encode(newPassword));
         userRepo.save(user);
+        // access tokens minted with the old password must not outlive it
+        tokenEpochs.bump(user.getId());
 
         prt.setConsumed(true);
         tokenRepo.save(prt);
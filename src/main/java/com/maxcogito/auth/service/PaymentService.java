@@ -1,6 +1,7 @@
 package com.maxcogito.auth.service;
 
 import com.maxcogito.auth.config.MockPayProperties;
+import com.maxcogito.auth.config.OutboundHttpClients;
 import com.maxcogito.auth.domain.PaymentTransaction;
 import com.maxcogito.auth.domain.SubscriptionServiceKind;
 import com.maxcogito.auth.domain.SubscriptionStatus;
@@ -15,15 +16,23 @@ import com.maxcogito.auth.repo.UserRepository;
 import com.maxcogito.auth.repo.UserSubscriptionRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 
@@ -40,14 +49,26 @@ public class PaymentService {
     private final PaymentTransactionRepository paymentRepository;
     private final SubscriptionService subscriptionService;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
+    private final TransactionTemplate txTemplate;
+    private final Clock clock;
+    private final Duration orphanAfter;
 
     public PaymentService(MockPayProperties props,
                           UserRepository userRepository,
                           UserSubscriptionRepository subscriptionRepository,
                           PaymentTransactionRepository paymentRepository,
-                          SubscriptionService subscriptionService) {
+                          SubscriptionService subscriptionService,
+                          OutboundHttpClients httpClients,
+                          PlatformTransactionManager transactionManager,
+                          Clock clock,
+                          @Value("${app.payments.orphan-after-seconds:900}") long orphanAfterSeconds) {
         this.props = props;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        // never sweep a row whose gateway call could still be in flight
+        this.orphanAfter = Duration.ofSeconds(Math.max(orphanAfterSeconds, props.getTimeoutMs() / 1000L + 60));
+        this.restTemplate = httpClients.restTemplate(OutboundHttpClients.MOCKPAY);
         this.userRepository = userRepository;
         this.subscriptionRepository = subscriptionRepository;
         this.paymentRepository = paymentRepository;
@@ -126,10 +147,15 @@ public class PaymentService {
         return dto;
     }
 
+    /**
+     * Checkout runs in three stages so no DB connection is held while MockPay answers:
+     * the CREATED row is committed first, the gateway is called with no transaction open, and the
+     * session id is attached in a second short transaction. Any gateway failure, including a
+     * timeout or 5xx, closes the row as FAILED; only a crash between the stages leaves one for
+     * {@link #abandonOrphanedCheckouts()}.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public CheckoutResponseDto startCheckout(String username, CheckoutRequestDto req) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
-
         String currency = (req.getCurrency() == null || req.getCurrency().isBlank())
                 ? "USD"
                 : req.getCurrency();
@@ -152,43 +178,41 @@ public class PaymentService {
             cancelUrl = "http://localhost:5173/subscriptions/cancel";
         }
 
-        // Compute quote & total
-        SubscriptionQuoteDto quote = quote(req.getSubscriptionIds(), currency);
-        BigDecimal totalAmount = BigDecimal.valueOf(quote.getTotalAmount());
-
-        // Persist payment transaction
-        PaymentTransaction tx = new PaymentTransaction();
-        tx.setUser(user);
-        tx.setSubscriptionIds(new ArrayList<>(req.getSubscriptionIds()));
-        tx.setProvider("MOCK_STRIPE");
-        tx.setAmount(totalAmount);
-        tx.setCurrency(currency);
-        tx.setStatus("CREATED");
-        tx.setCreatedAt(Instant.now());
-
-        tx = paymentRepository.save(tx);
-
-        // ---------- Call mock-payment-gateway: JSON body + Content-Type ----------
+        // Stage 1: compute quote and persist the CREATED transaction
+        PaymentTransaction tx = txTemplate.execute(status -> {
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found: " + username));
+            SubscriptionQuoteDto quote = quote(req.getSubscriptionIds(), currency);
+
+            PaymentTransaction created = new PaymentTransaction();
+            created.setUser(user);
+            created.setSubscriptionIds(new ArrayList<>(req.getSubscriptionIds()));
+            created.setProvider("MOCK_STRIPE");
+            created.setAmount(BigDecimal.valueOf(quote.getTotalAmount()));
+            created.setCurrency(currency);
+            created.setStatus("CREATED");
+            created.setCreatedAt(Instant.now(clock));
+            return paymentRepository.save(created);
+        });
+
+        // Stage 2: call mock-payment-gateway (JSON body + Content-Type), no transaction open
         Map<String, Object> body = new HashMap<>();
-        body.put("amount", totalAmount);
+        body.put("amount", tx.getAmount());
         body.put("currency", currency);
         body.put("description", "MaxCogito subscriptions for " + username);
         body.put("subscriptionIds", req.getSubscriptionIds());
         body.put("returnUrl", returnUrl);
         body.put("cancelUrl", cancelUrl);
 
-        log.info("Inside startCheckout with body {}", body);
+        log.debug("startCheckout payment {} body {}", tx.getId(), body);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
-        log.info("Inside startCheckout with headers {}", headers);
 
         HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
 
         @SuppressWarnings("unchecked")
         Map<String, Object> response;
         try {
-            log.info("Inside startCheckout with entity {}", entity);
-            log.info("Inside startCheckout with url {}", gateway+"/mockpay/api/v1/sessions");
             response = restTemplate.postForObject(
                     gateway + "/mockpay/api/v1/sessions",
                     entity,
@@ -196,52 +220,64 @@ public class PaymentService {
             );
         } catch (HttpClientErrorException e) {
             // Helpful when debugging 415/400/etc
+            paymentRepository.closeWithoutSession(tx.getId(), "FAILED", Instant.now(clock));
             String msg = "MockPay /sessions call failed: " + e.getStatusCode() +
                     " body=" + e.getResponseBodyAsString();
             throw new IllegalStateException(msg, e);
+        } catch (RestClientException e) {
+            // timeout or 5xx: the gateway may have opened a session, but the user never got its
+            // checkout URL and the row has no session id to match a webhook, so it cannot be paid
+            paymentRepository.closeWithoutSession(tx.getId(), "FAILED", Instant.now(clock));
+            throw new IllegalStateException("MockPay /sessions call failed: " + e.getMessage(), e);
         }
 
-        if (response == null) {
-            throw new IllegalStateException("MockPay /sessions returned null response");
-        }
-
-        String sessionId = (String) response.get("sessionId");
-        String checkoutPath = (String) response.get("checkoutUrl");
+        String sessionId = response != null ? (String) response.get("sessionId") : null;
+        String checkoutPath = response != null ? (String) response.get("checkoutUrl") : null;
         if (sessionId == null || checkoutPath == null) {
+            paymentRepository.closeWithoutSession(tx.getId(), "FAILED", Instant.now(clock));
             throw new IllegalStateException(
                     "MockPay /sessions response missing sessionId or checkoutUrl: " + response
             );
         }
 
-        String checkoutUrl = gateway + checkoutPath;
-
-        tx.setProviderId(sessionId);
-        tx.setUpdatedAt(Instant.now());
-        paymentRepository.save(tx);
+        // Stage 3: attach the session in its own short transaction
+        if (paymentRepository.attachProviderSession(tx.getId(), sessionId, Instant.now(clock)) == 0) {
+            throw new IllegalStateException("Checkout " + tx.getId() + " expired before the gateway answered");
+        }
 
         CheckoutResponseDto dto = new CheckoutResponseDto();
         dto.setPaymentId(tx.getId());
         dto.setProvider("MOCK_STRIPE");
-        dto.setCheckoutUrl(checkoutUrl);
+        dto.setCheckoutUrl(gateway + checkoutPath);
 
         return dto;
     }
 
+    @Scheduled(fixedDelayString = "${app.payments.orphan-sweep-ms:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void abandonOrphanedCheckouts() {
+        Instant now = Instant.now(clock);
+        int n = paymentRepository.abandonOrphans(now.minus(orphanAfter), now);
+        if (n > 0) {
+            log.info("Marked {} checkout(s) without a gateway session as ABANDONED", n);
+        }
+    }
+
     /**
-     * Called by webhook when mock gateway reports success/failure.
-     * /api/v1/payments/webhook/mock  → PaymentController.mockWebhook(...)
+     * Applies one webhook event from the inbox (see PaymentWebhookInbox), in the caller's
+     * transaction. Any exception rolls the whole event back so it can be retried.
      */
-    public void handleMockWebhook(String sessionId, boolean success, List<Long> subscriptionIds) {
-        // Find transaction by providerId
+    public void applyWebhookEvent(String sessionId, boolean success, List<Long> subscriptionIds) {
         PaymentTransaction tx = paymentRepository.findByProviderId(sessionId)
-                .orElse(null);
+                // the webhook can beat stage 3 of startCheckout; retried until the session is attached
+                .orElseThrow(() -> new IllegalStateException("No payment for session " + sessionId));
 
-        if (tx == null) {
-            return;
+        if ("SUCCEEDED".equals(tx.getStatus())) {
+            return; // a late or repeated event must not undo a payment
         }
 
         tx.setStatus(success ? "SUCCEEDED" : "FAILED");
-        tx.setUpdatedAt(Instant.now());
+        tx.setUpdatedAt(Instant.now(clock));
         paymentRepository.save(tx);
 
         // Subscription IDs from payload (preferred), otherwise from the transaction
@@ -255,19 +291,15 @@ public class PaymentService {
 
         if (success) {
             // Auto-approve via SubscriptionService (also grants roles + sets validUntil)
-            for (Long id : targetIds) {
-                try {
-                    subscriptionService.approve(id, PAYMENT_SYSTEM_USERNAME);
-                } catch (Exception ex) {
-                    // For now, log/ignore; you could add more robust failure handling.
-                    ex.printStackTrace();
-                }
+            var decision = subscriptionService.approveAll(targetIds, PAYMENT_SYSTEM_USERNAME);
+            if (!decision.notFound().isEmpty()) {
+                log.warn("Payment {} names unknown subscriptions {}", tx.getId(), decision.notFound());
             }
         } else {
             // Mark subscriptions as payment failed
             subscriptionRepository.findAllById(targetIds).forEach(sub -> {
                 sub.setStatus(SubscriptionStatus.PAYMENT_FAILED);
-                sub.setValidUntil(Instant.now());
+                sub.setValidUntil(Instant.now(clock));
                 subscriptionRepository.save(sub);
             });
         }
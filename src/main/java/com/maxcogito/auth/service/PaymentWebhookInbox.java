@@ -0,0 +1,273 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.PaymentWebhookEvent;
+import com.maxcogito.auth.repo.PaymentWebhookEventRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Inbox for payment gateway webhooks.
+ *
+ * {@link #accept} only inserts the event (a repeat of the same provider/session/event is dropped by
+ * the unique key) so the gateway gets its 200 as soon as the row is durable. Due rows are claimed
+ * in batches with SKIP LOCKED and a lease, the same way OutboundMessageDispatcher claims mail, and
+ * each event is applied in its own transaction together with marking it DONE, so a crash between
+ * the two cannot apply it twice. Failures back off with jitter and are dead-lettered after
+ * {@code max-attempts}.
+ */
+@Component
+public class PaymentWebhookInbox implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentWebhookInbox.class);
+
+    private static final String DEFAULT_PROVIDER = "MOCK_STRIPE";
+
+    private final PaymentWebhookEventRepository repo;
+    private final PaymentService payments;
+    private final TransactionTemplate tx;
+    private final Clock clock;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final Duration doneRetention;
+
+    private final ThreadPoolExecutor workers;
+    private final int maxInFlight;
+    private final Semaphore inFlight; // one permit per claimed batch
+    private final ExecutorService poller;
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public PaymentWebhookInbox(PaymentWebhookEventRepository repo,
+                               PaymentService payments,
+                               PlatformTransactionManager transactionManager,
+                               Clock clock,
+                               @Value("${app.payments.webhook.threads:2}") int threads,
+                               @Value("${app.payments.webhook.batch-size:50}") int batchSize,
+                               @Value("${app.payments.webhook.max-attempts:10}") int maxAttempts,
+                               @Value("${app.payments.webhook.lease-seconds:60}") long leaseSeconds,
+                               @Value("${app.payments.webhook.backoff-base-ms:1000}") long backoffBaseMs,
+                               @Value("${app.payments.webhook.backoff-max-ms:300000}") long backoffMaxMs,
+                               @Value("${app.payments.webhook.done-retention-days:30}") long doneRetentionDays) {
+        this.repo = repo;
+        this.payments = payments;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+        this.doneRetention = Duration.ofDays(doneRetentionDays);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads),
+                daemon("webhook-apply"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.poller = Executors.newSingleThreadExecutor(daemon("webhook-poll"));
+        this.maxInFlight = 2 * threads;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /** Stores the event; false if it was a duplicate delivery. */
+    public boolean accept(String provider, String sessionId, String status, List<Long> subscriptionIds) {
+        if (sessionId == null || sessionId.isBlank()) {
+            throw new IllegalArgumentException("sessionId is required");
+        }
+        String event = "succeeded".equalsIgnoreCase(status) ? "succeeded" : "failed";
+        String ids = subscriptionIds == null || subscriptionIds.isEmpty() ? null
+                : subscriptionIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String p = provider == null || provider.isBlank() ? DEFAULT_PROVIDER : provider.toUpperCase(Locale.ROOT);
+
+        boolean inserted = repo.insertIfAbsent(p, sessionId, event, ids, Instant.now(clock)) == 1;
+        if (inserted) {
+            received.increment();
+            wakeUp();
+        } else {
+            duplicates.increment();
+        }
+        return inserted;
+    }
+
+    /** Poll soon, off the caller's thread. */
+    public void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            try {
+                poller.execute(() -> {
+                    wakeUpPending.set(false);
+                    poll();
+                });
+            } catch (RuntimeException e) {
+                wakeUpPending.set(false); // shutting down; the scheduled poll covers it
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.payments.webhook.poll-ms:2000}")
+    public void poll() {
+        if (!pollLock.tryLock()) {
+            return;
+        }
+        try {
+            while (inFlight.tryAcquire()) {
+                List<PaymentWebhookEvent> batch;
+                try {
+                    batch = claim(batchSize);
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                if (batch.isEmpty()) {
+                    inFlight.release();
+                    break;
+                }
+                workers.execute(() -> applyBatch(batch));
+                if (batch.size() < batchSize) {
+                    break; // nothing more is due
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Payment webhook poll failed: {}", e.getMessage());
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    @Scheduled(cron = "${app.payments.webhook.cleanup-cron:0 45 3 * * *}")
+    public void purgeDone() {
+        repo.deleteDoneBefore(Instant.now(clock).minus(doneRetention));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("received", received.sum());
+        out.put("duplicates", duplicates.sum());
+        out.put("applied", applied.sum());
+        out.put("retried", retried.sum());
+        out.put("deadLettered", deadLettered.sum());
+        out.put("batchesInFlight", maxInFlight - inFlight.availablePermits());
+        Map<String, Long> byStatus = new LinkedHashMap<>();
+        for (Object[] row : repo.countByStatus()) {
+            byStatus.put(String.valueOf(row[0]), ((Number) row[1]).longValue());
+        }
+        out.put("rows", byStatus);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        poller.shutdownNow();
+        workers.shutdown();
+    }
+
+    // ---------------------------------------------------------------------
+
+    private List<PaymentWebhookEvent> claim(int limit) {
+        return tx.execute(status -> {
+            Instant now = Instant.now(clock);
+            List<PaymentWebhookEvent> due = repo.lockDue(now, limit);
+            for (PaymentWebhookEvent e : due) {
+                e.setStatus(PaymentWebhookEvent.Status.PROCESSING);
+                e.setAttempts(e.getAttempts() + 1);
+                e.setLockedUntil(now.plus(lease));
+            }
+            return due; // flushed on commit
+        });
+    }
+
+    private void applyBatch(List<PaymentWebhookEvent> batch) {
+        try {
+            for (PaymentWebhookEvent e : batch) {
+                apply(e);
+            }
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    private void apply(PaymentWebhookEvent e) {
+        try {
+            tx.executeWithoutResult(status -> {
+                payments.applyWebhookEvent(e.getSessionId(), e.isSuccess(), e.subscriptionIdList());
+                if (repo.markDone(e.getId(), Instant.now(clock)) == 0) {
+                    // lease lost to another node; roll back so the event is applied once
+                    throw new IllegalStateException("Webhook event " + e.getId() + " is no longer leased");
+                }
+            });
+            applied.increment();
+        } catch (RuntimeException ex) {
+            try {
+                recordFailure(e, ex);
+            } catch (RuntimeException ignored) {
+                // the lease expires and the row is claimed again
+                log.warn("Could not record webhook event {} failure: {}", e.getId(), ignored.getMessage());
+            }
+        }
+    }
+
+    private void recordFailure(PaymentWebhookEvent e, Throwable ex) {
+        String error = truncate(ex.getClass().getSimpleName() + ": " + ex.getMessage());
+        if (e.getAttempts() >= maxAttempts) {
+            repo.markDead(e.getId(), error);
+            deadLettered.increment();
+            log.warn("Payment webhook {} {} for session {} dead-lettered after {} attempts: {}",
+                    e.getProvider(), e.getEvent(), e.getSessionId(), e.getAttempts(), error);
+        } else {
+            repo.markRetry(e.getId(), Instant.now(clock).plusMillis(backoffMs(e.getAttempts())), error);
+            retried.increment();
+        }
+    }
+
+    /** Exponential backoff with jitter in [50%, 100%] of the step. */
+    private long backoffMs(int attempts) {
+        long step = backoffBaseMs << Math.min(attempts - 1, 20);
+        long capped = Math.min(backoffMaxMs, step);
+        return capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1);
+    }
+
+    private static String truncate(String s) {
+        return s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,300 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.RefreshToken;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps refresh_token's monthly partitions (V15) created ahead of time and retires old ones.
+ *
+ * Partitions are named refresh_token_pYYYYMM and hold one UTC month of created_at.
+ * {@link #maintain} keeps {@code premake-months} future months in place so inserts never miss a
+ * partition. Rows that still land in refresh_token_default (V19), because no run had made their
+ * month yet, are moved into the month's partition when maintain creates it; whatever is left there
+ * is reported as defaultRows. With app.refresh.retention.mode=partition (the default) the nightly cleanup calls
+ * {@link #dropExpired} instead of a table-wide DELETE: a month that ended more than
+ * RefreshToken.MAX_LIFETIME (plus grace) ago only holds expired tokens, so its partition is
+ * detached and dropped whole, with no dead tuples to vacuum and next to no WAL. Revoked tokens in
+ * younger partitions wait for their month to age out; the session queries already skip them.
+ * on-expire=detach keeps the detached table for archiving. DETACH takes an ACCESS EXCLUSIVE lock on
+ * refresh_token (CONCURRENTLY is not allowed next to a default partition), so it runs with a short
+ * lock_timeout and a month that cannot get the lock is left for the next run.
+ *
+ * Both run under a Postgres session advisory lock, so only one node changes partitions at a time.
+ */
+@Component
+public class RefreshTokenPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenPartitions.class);
+
+    private static final long LOCK_KEY = 0x52545054L; // "RTPT"
+    private static final String PREFIX = "refresh_token_p";
+    private static final String DEFAULT_PARTITION = "refresh_token_default";
+    private static final String LOCK_NOT_AVAILABLE = "55P03";
+    private static final Pattern NAME = Pattern.compile(PREFIX + "(\\d{6})");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LIST_SQL = "select c.relname, c.reltuples::bigint from pg_inherits i " +
+            "join pg_class c on c.oid = i.inhrelid where i.inhparent = 'refresh_token'::regclass order by c.relname";
+
+    private final JdbcTemplate jdbc;
+    private final Clock clock;
+
+    private final boolean partitionRetention;
+    private final int premakeMonths;
+    private final boolean dropDetached;
+    private final Duration grace;
+    private final long lockTimeoutMs;
+
+    private final LongAdder created = new LongAdder();
+    private final LongAdder retired = new LongAdder();
+    private volatile long defaultRows;
+    private volatile Map<String, Object> lastRetirement = Map.of();
+
+    public RefreshTokenPartitions(JdbcTemplate jdbc,
+                                  Clock clock,
+                                  @Value("${app.refresh.retention.mode:partition}") String mode,
+                                  @Value("${app.refresh.partitions.premake-months:3}") int premakeMonths,
+                                  @Value("${app.refresh.partitions.on-expire:drop}") String onExpire,
+                                  @Value("${app.refresh.partitions.grace-days:1}") long graceDays,
+                                  @Value("${app.refresh.partitions.lock-timeout-ms:5000}") long lockTimeoutMs) {
+        if (!mode.equalsIgnoreCase("partition") && !mode.equalsIgnoreCase("delete")) {
+            throw new IllegalStateException("Unknown app.refresh.retention.mode: " + mode);
+        }
+        if (!onExpire.equalsIgnoreCase("drop") && !onExpire.equalsIgnoreCase("detach")) {
+            throw new IllegalStateException("Unknown app.refresh.partitions.on-expire: " + onExpire);
+        }
+        this.jdbc = jdbc;
+        this.clock = clock;
+        this.partitionRetention = mode.equalsIgnoreCase("partition");
+        this.premakeMonths = Math.max(1, premakeMonths);
+        this.dropDetached = onExpire.equalsIgnoreCase("drop");
+        this.grace = Duration.ofDays(Math.max(0, graceDays));
+        this.lockTimeoutMs = Math.max(1, lockTimeoutMs);
+    }
+
+    @PostConstruct
+    void init() {
+        maintain();
+    }
+
+    /** True when expired tokens are retired by dropping partitions rather than by DELETE. */
+    public boolean isPartitionRetention() {
+        return partitionRetention;
+    }
+
+    @Scheduled(fixedDelayString = "${app.refresh.partitions.maintain-ms:3600000}",
+            initialDelayString = "${app.refresh.partitions.maintain-ms:3600000}")
+    public void maintain() {
+        try {
+            withLock(st -> {
+                YearMonth current = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+                Set<YearMonth> stray = monthsInDefault(st);
+                Set<YearMonth> months = new TreeSet<>(stray);
+                for (int i = 0; i <= premakeMonths; i++) {
+                    months.add(current.plusMonths(i));
+                }
+                for (YearMonth month : months) {
+                    if (create(st, month, stray.contains(month))) {
+                        created.increment();
+                    }
+                }
+                try (ResultSet rs = st.executeQuery("select count(*) from " + DEFAULT_PARTITION)) {
+                    rs.next();
+                    defaultRows = rs.getLong(1);
+                }
+                if (defaultRows > 0) {
+                    log.warn("{} rows left in {} after maintenance", defaultRows, DEFAULT_PARTITION);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // inserts fall back to the default partition until the next run creates the month
+            log.warn("refresh_token partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Detaches, and unless on-expire=detach drops, every partition that can only hold expired
+     * tokens. Returns the number of partitions retired; 0 if another node holds the lock. A DETACH
+     * that waits longer than lock-timeout-ms for refresh_token gives up, and that month and any
+     * later ones are retried on the next run.
+     */
+    public int dropExpired() {
+        Instant cutoff = clock.instant().minus(RefreshToken.MAX_LIFETIME).minus(grace);
+        long started = System.nanoTime();
+        Integer result = withLock(st -> {
+            Map<String, Long> expired = new LinkedHashMap<>();
+            try (ResultSet rs = st.executeQuery(LIST_SQL)) {
+                while (rs.next()) {
+                    YearMonth month = monthOf(rs.getString(1));
+                    if (month != null && !start(month.plusMonths(1)).isAfter(cutoff)) {
+                        expired.put(rs.getString(1), Math.max(0, rs.getLong(2)));
+                    }
+                }
+            }
+            long rows = 0;
+            int done = 0;
+            for (Map.Entry<String, Long> p : expired.entrySet()) {
+                st.execute("set lock_timeout = " + lockTimeoutMs);
+                try {
+                    st.execute("alter table refresh_token detach partition " + p.getKey());
+                } catch (SQLException e) {
+                    if (!LOCK_NOT_AVAILABLE.equals(e.getSQLState())) {
+                        throw e;
+                    }
+                    log.warn("refresh_token busy, leaving {} for the next run", p.getKey());
+                    break;
+                } finally {
+                    st.execute("reset lock_timeout");
+                }
+                done++;
+                if (dropDetached) {
+                    st.execute("drop table " + p.getKey());
+                }
+                rows += p.getValue();
+                retired.increment();
+                log.info("{} refresh_token partition {} (~{} rows)", dropDetached ? "Dropped" : "Detached",
+                        p.getKey(), p.getValue());
+            }
+
+            Map<String, Object> run = new LinkedHashMap<>();
+            run.put("at", clock.instant().toString());
+            run.put("cutoff", cutoff.toString());
+            run.put("partitions", expired.keySet().stream().limit(done).toList());
+            run.put("approxRows", rows);
+            run.put("durationMs", (System.nanoTime() - started) / 1_000_000);
+            lastRetirement = run;
+            return done;
+        });
+        return result != null ? result : 0;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> partitions = new LinkedHashMap<>();
+        jdbc.query(LIST_SQL, rs -> {
+            partitions.put(rs.getString(1), Math.max(0, rs.getLong(2)));
+        });
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("retentionMode", partitionRetention ? "partition" : "delete");
+        out.put("onExpire", dropDetached ? "drop" : "detach");
+        out.put("partitions", partitions);
+        out.put("defaultRows", defaultRows);
+        out.put("created", created.sum());
+        out.put("retired", retired.sum());
+        out.put("lastRetirement", lastRetirement);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------
+
+    /**
+     * Creates the partition for {@code month} unless it exists. When the default partition holds
+     * rows of that month a plain CREATE ... PARTITION OF would fail, so the rows are moved into a
+     * new table that is then attached, all in one transaction.
+     */
+    private boolean create(Statement st, YearMonth month, boolean fromDefault) throws SQLException {
+        String name = PREFIX + month.format(SUFFIX);
+        try (ResultSet rs = st.executeQuery("select to_regclass('" + name + "') is null")) {
+            rs.next();
+            if (!rs.getBoolean(1)) {
+                return false;
+            }
+        }
+        String range = "('" + start(month) + "') to ('" + start(month.plusMonths(1)) + "')";
+        if (!fromDefault) {
+            st.execute("create table if not exists " + name + " partition of refresh_token for values from " + range);
+            log.info("Created refresh_token partition {}", name);
+            return true;
+        }
+        Connection con = st.getConnection();
+        con.setAutoCommit(false);
+        try {
+            st.execute("set local lock_timeout = " + lockTimeoutMs);
+            st.execute("create table " + name + " (like refresh_token including defaults)");
+            int moved = st.executeUpdate("with moved as (delete from " + DEFAULT_PARTITION
+                    + " where created_at >= '" + start(month) + "' and created_at < '" + start(month.plusMonths(1))
+                    + "' returning *) insert into " + name + " select * from moved");
+            st.execute("alter table refresh_token attach partition " + name + " for values from " + range);
+            con.commit();
+            log.info("Created refresh_token partition {} with {} rows from {}", name, moved, DEFAULT_PARTITION);
+            return true;
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private static Set<YearMonth> monthsInDefault(Statement st) throws SQLException {
+        Set<YearMonth> months = new TreeSet<>();
+        try (ResultSet rs = st.executeQuery("select distinct to_char(created_at at time zone 'UTC', 'YYYYMM') from "
+                + DEFAULT_PARTITION)) {
+            while (rs.next()) {
+                months.add(YearMonth.parse(rs.getString(1), SUFFIX));
+            }
+        }
+        return months;
+    }
+
+    private static Instant start(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static YearMonth monthOf(String partition) {
+        Matcher m = NAME.matcher(partition);
+        return m.matches() ? YearMonth.parse(m.group(1), SUFFIX) : null;
+    }
+
+    /**
+     * Runs {@code work} on one connection holding the advisory lock, in autocommit so each DETACH
+     * holds its lock on refresh_token only for its own statement. Returns null if another node holds it.
+     */
+    private <T> T withLock(SqlWork<T> work) {
+        return jdbc.execute((ConnectionCallback<T>) con -> {
+            try (Statement st = con.createStatement()) {
+                try (ResultSet rs = st.executeQuery("select pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                    rs.next();
+                    if (!rs.getBoolean(1)) {
+                        return null;
+                    }
+                }
+                try {
+                    return work.run(st);
+                } finally {
+                    st.execute("select pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface SqlWork<T> {
+        T run(Statement st) throws SQLException;
+    }
+}
@@ -5,6 +5,7 @@ import com.maxcogito.auth.domain.User;
 import com.maxcogito.auth.errors.UnauthorizedException;
 import com.maxcogito.auth.repo.RefreshTokenRepository;
 import com.maxcogito.auth.repo.UserRepository;
+import com.maxcogito.auth.security.TokenEpochRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,7 +15,6 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
-import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -25,16 +25,22 @@ public class RefreshTokenService {
     private final boolean rotateOnUse;
     private final SecureRandom sr = new SecureRandom();
     private final UserRepository userRepo;
-    private final Duration refreshTtl = Duration.ofDays(30);
+    private final Duration refreshTtl = RefreshToken.MAX_LIFETIME;
     private final int maxActiveTokens;
+    private final TokenEpochRegistry tokenEpochs;
+    private final RefreshTokenUsageBuffer usage;
     public RefreshTokenService(RefreshTokenRepository repo,
                                UserRepository userRepo,
+                               TokenEpochRegistry tokenEpochs,
+                               RefreshTokenUsageBuffer usage,
                                @Value("${app.refresh.tokenTtlDays:14}") long ttlDays,
                                @Value("${app.refresh.rotateOnUse:true}") boolean rotateOnUse,
                                @Value("${app.jwt.max-active-tokens}") int maxActiveTokens)
     {
         this.repo = repo;
         this.userRepo = userRepo;
+        this.tokenEpochs = tokenEpochs;
+        this.usage = usage;
         this.ttlDays = ttlDays;
         this.rotateOnUse = rotateOnUse;
         this.maxActiveTokens = maxActiveTokens;
@@ -61,19 +67,23 @@ public class RefreshTokenService {
     }
 
 
-    /** Validate a presented refresh token: check DB row (by HASH), not revoked/expired; stamp lastUsedAt */
+    /**
+     * Validate a presented refresh token (by HASH): not revoked, not expired. The check and the
+     * lastUsedAt stamp are one conditional UPDATE ... RETURNING, or a SELECT plus a buffered stamp
+     * when {@link RefreshTokenUsageBuffer} is enabled.
+     */
     @Transactional
     public RefreshToken validate(String presentedRaw) {
         String hash = hashToken(presentedRaw);
-        RefreshToken rt = repo.findByToken(hash)
-                .orElseThrow(() -> new UnauthorizedException("Invalid refresh token"));
-
-        if (rt.isRevoked() || rt.getExpiresAt().isBefore(Instant.now())) {
-            throw new UnauthorizedException("Expired or revoked refresh token");
+        Instant now = Instant.now();
+        if (usage.isEnabled()) {
+            RefreshToken rt = repo.findUsable(hash, now)
+                    .orElseThrow(() -> new UnauthorizedException("Invalid, expired or revoked refresh token"));
+            usage.record(rt.getId(), now);
+            return rt;
         }
-
-        rt.setLastUsedAt(Instant.now());
-        return repo.save(rt);
+        return repo.validateAndStamp(hash, now)
+                .orElseThrow(() -> new UnauthorizedException("Invalid, expired or revoked refresh token"));
     }
 
     public void revoke(String token) {
@@ -81,9 +91,10 @@ public class RefreshTokenService {
     }
 
 
-    /** Revoke all active tokens for a user (logout everywhere) */
+    /** Revoke all active tokens for a user (logout everywhere), access tokens included */
     @Transactional
     public int revokeAllForUser(UUID userId) {
+        tokenEpochs.bump(userId);
         return repo.revokeAllForUser(userId, Instant.now());
     }
 
@@ -108,33 +119,22 @@ public class RefreshTokenService {
     /**
      * Ensure that the user has at most maxActiveTokens active refresh tokens.
      * "Oldest" means least recently used: coalesce(lastUsedAt, createdAt) ascending.
+     * One set-based UPDATE; no token entities are loaded.
      */
     @Transactional
     protected void enforcePerUserLimit(UUID userId, Instant now) {
-        List<RefreshToken> active = repo.findActiveForUserOrderByRecent(userId, now);
-        if (active.size() <= maxActiveTokens) {
-            return;
-        }
-
-        // active is newest → oldest; keep the first maxActiveTokens, revoke the rest
-        for (int i = maxActiveTokens; i < active.size(); i++) {
-            RefreshToken rt = active.get(i);
-            rt.setRevoked(true);
-            rt.setRevokedAt(now);
-        }
-
-        // Persist only the ones we changed
-        repo.saveAll(active.subList(maxActiveTokens, active.size()));
+        repo.revokeBeyondLimit(userId, maxActiveTokens, now);
     }
 
-    private static String randomOpaque() {
+    // package-private (like hashToken) so the JMH benchmarks in src/jmh can call them
+    static String randomOpaque() {
         // 32 bytes → Base64URL without padding (~43 chars). You can also use Hex.
         byte[] b = new byte[32];
         new java.security.SecureRandom().nextBytes(b);
         return java.util.Base64.getUrlEncoder().withoutPadding().encodeToString(b);
     }
 
-    private static String hashToken(String raw) {
+    static String hashToken(String raw) {
         // Simple SHA-256; consider Argon2id if you treat refresh tokens like passwords.
         try {
             var md = java.security.MessageDigest.getInstance("SHA-256");
@@ -0,0 +1,114 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.RefreshToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind for refresh_token.last_used_at (app.refresh.last-used.write-behind=true).
+ *
+ * last_used_at only feeds admin session reporting and least-recently-used eviction, so a refresh
+ * records the stamp here and a scheduled flush writes the latest stamp per token in one JDBC batch.
+ * Repeated refreshes of one token between flushes collapse into a single update. Stamps still
+ * buffered when a node dies are lost, which only makes a session look older than it is.
+ */
+@Component
+public class RefreshTokenUsageBuffer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenUsageBuffer.class);
+
+    // never move a stamp backwards if another node flushed a newer one; the created_at bound
+    // keeps each update to the partitions that can still hold a live token
+    private static final String STAMP_SQL = "update refresh_token set last_used_at = ? " +
+            "where id = ? and (last_used_at is null or last_used_at < ?) and created_at > ?";
+
+    private final JdbcTemplate jdbc;
+    private final boolean enabled;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<UUID, Instant> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public RefreshTokenUsageBuffer(JdbcTemplate jdbc,
+                                   @Value("${app.refresh.last-used.write-behind:false}") boolean enabled,
+                                   @Value("${app.refresh.last-used.batch-size:500}") int batchSize) {
+        this.jdbc = jdbc;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void record(UUID tokenId, Instant usedAt) {
+        pending.merge(tokenId, usedAt, (a, b) -> a.isAfter(b) ? a : b);
+        recorded.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.refresh.last-used.flush-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(Math.min(pending.size(), batchSize));
+        Iterator<Map.Entry<UUID, Instant>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Instant> e = it.next();
+            // remove only the value we read; a newer stamp recorded meanwhile stays for the next flush
+            if (pending.remove(e.getKey(), e.getValue())) {
+                Timestamp at = Timestamp.from(e.getValue());
+                rows.add(new Object[]{at, e.getKey(), at, Timestamp.from(e.getValue().minus(RefreshToken.MAX_LIFETIME))});
+            }
+            if (rows.size() == batchSize || (!it.hasNext() && !rows.isEmpty())) {
+                write(rows);
+                rows = new ArrayList<>(batchSize);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("pending", pending.size());
+        out.put("recorded", recorded.sum());
+        out.put("flushed", flushed.sum());
+        out.put("dropped", dropped.sum());
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+    }
+
+    private void write(List<Object[]> rows) {
+        try {
+            jdbc.batchUpdate(STAMP_SQL, rows);
+            flushed.add(rows.size());
+        } catch (RuntimeException ex) {
+            // reporting data only: drop the batch rather than retry forever
+            dropped.add(rows.size());
+            log.warn("Refresh token last_used_at flush failed ({} rows dropped): {}", rows.size(), ex.getMessage());
+        }
+    }
+}
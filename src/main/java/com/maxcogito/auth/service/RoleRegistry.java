@@ -0,0 +1,47 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.Role;
+import com.maxcogito.auth.repo.RoleRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Role name to id, read once from the role table. Roles are seeded by migrations and never
+ * renamed, so the snapshot is only re-read when a name is missing from it.
+ */
+@Component
+public class RoleRegistry {
+
+    private final RoleRepository roleRepository;
+
+    private volatile Map<String, UUID> idsByName = Map.of();
+
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    public UUID idOf(String roleName) {
+        UUID id = idsByName.get(roleName);
+        if (id == null) {
+            reload();
+            id = idsByName.get(roleName);
+            if (id == null) {
+                throw new IllegalStateException("Role not found: " + roleName);
+            }
+        }
+        return id;
+    }
+
+    /** Lazy reference for association writes; no query. */
+    public Role reference(String roleName) {
+        return roleRepository.getReferenceById(idOf(roleName));
+    }
+
+    private synchronized void reload() {
+        idsByName = roleRepository.findAll().stream()
+                .collect(Collectors.toUnmodifiableMap(Role::getName, Role::getId));
+    }
+}
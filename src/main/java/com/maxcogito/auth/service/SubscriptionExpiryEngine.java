@@ -0,0 +1,209 @@
+package com.maxcogito.auth.service;
+
+import com.maxcogito.auth.domain.SubscriptionServiceKind;
+import com.maxcogito.auth.repo.UserSubscriptionRepository;
+import com.maxcogito.auth.security.TokenEpochRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves APPROVED/ACTIVE subscriptions past their valid_until to EXPIRED and takes back the
+ * ROLE_* that approval granted.
+ *
+ * A run pages through expired rows by (valid_until, id) on idx_user_subscription_status_valid_until,
+ * {@code chunk-size} rows per transaction, so it never scans the table or holds long locks. Rows
+ * are locked with SKIP LOCKED, so nodes running the sweep at the same time split the work. A role
+ * is only revoked when the user has no other live subscription of that kind, and users who lost a
+ * role get their token epoch bumped so tokens carrying it stop working.
+ */
+@Component
+public class SubscriptionExpiryEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionExpiryEngine.class);
+
+    private static final String REVOKE_ROLE_SQL = """
+            delete from user_roles ur
+            where ur.user_id = ? and ur.role_id = ?
+              and not exists (select 1 from user_subscription s
+                              where s.user_id = ur.user_id and s.service_kind = ?
+                                and s.status in ('APPROVED', 'ACTIVE')
+                                and (s.valid_until is null or s.valid_until >= ?))
+            """;
+
+    private final UserSubscriptionRepository subscriptions;
+    private final RoleRegistry roles;
+    private final TokenEpochRegistry tokenEpochs;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rolesRevoked = new LongAdder();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public SubscriptionExpiryEngine(UserSubscriptionRepository subscriptions,
+                                    RoleRegistry roles,
+                                    TokenEpochRegistry tokenEpochs,
+                                    JdbcTemplate jdbc,
+                                    PlatformTransactionManager transactionManager,
+                                    Clock clock,
+                                    @Value("${app.subscriptions.expiry.enabled:true}") boolean enabled,
+                                    @Value("${app.subscriptions.expiry.chunk-size:500}") int chunkSize,
+                                    @Value("${app.subscriptions.expiry.max-chunks-per-run:200}") int maxChunksPerRun) {
+        this.subscriptions = subscriptions;
+        this.roles = roles;
+        this.tokenEpochs = tokenEpochs;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+
+    @Scheduled(fixedDelayString = "${app.subscriptions.expiry.sweep-ms:300000}",
+            initialDelayString = "${app.subscriptions.expiry.initial-delay-ms:60000}")
+    public void sweep() {
+        if (!enabled || !runLock.tryLock()) {
+            return;
+        }
+        long started = System.nanoTime();
+        Instant now = clock.instant();
+        int processed = 0;
+        int revoked = 0;
+        int chunks = 0;
+        try {
+            Cursor cursor = new Cursor(Instant.EPOCH, 0L);
+            while (chunks < maxChunksPerRun) {
+                ChunkResult r = tx.execute(status -> expireChunk(now, cursor));
+                chunks++;
+                processed += r.expired();
+                revoked += r.revoked();
+                if (r.next() == null) {
+                    break;
+                }
+                cursor.advance(r.next());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Subscription expiry run failed after {} chunk(s): {}", chunks, e.getMessage());
+        } finally {
+            long tookMs = (System.nanoTime() - started) / 1_000_000;
+            runs.increment();
+            expired.add(processed);
+            rolesRevoked.add(revoked);
+            Map<String, Object> last = new LinkedHashMap<>();
+            last.put("startedAt", now.toString());
+            last.put("durationMs", tookMs);
+            last.put("chunks", chunks);
+            last.put("expired", processed);
+            last.put("rolesRevoked", revoked);
+            lastRun = last;
+            if (processed > 0) {
+                log.info("Expired {} subscription(s), revoked {} role grant(s) in {} ms ({} chunk(s))",
+                        processed, revoked, tookMs, chunks);
+            }
+            runLock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("runs", runs.sum());
+        out.put("expired", expired.sum());
+        out.put("rolesRevoked", rolesRevoked.sum());
+        out.put("lastRun", lastRun);
+        return out;
+    }
+
+    // ---------------------------------------------------------------------
+
+    private ChunkResult expireChunk(Instant now, Cursor cursor) {
+        List<Object[]> rows = subscriptions.lockExpiredPage(now, cursor.validUntil, cursor.id, chunkSize);
+        if (rows.isEmpty()) {
+            return new ChunkResult(0, 0, null);
+        }
+
+        List<Long> ids = new ArrayList<>(rows.size());
+        Set<List<Object>> grants = new LinkedHashSet<>(); // [userId, roleId, serviceKind], de-duplicated
+        for (Object[] row : rows) {
+            ids.add(((Number) row[0]).longValue());
+            UUID userId = (UUID) row[1];
+            String kind = (String) row[2];
+            grants.add(List.of(userId, roles.idOf(SubscriptionService.roleNameFor(SubscriptionServiceKind.valueOf(kind))), kind));
+        }
+
+        int n = subscriptions.markExpired(ids);
+
+        Timestamp at = Timestamp.from(now);
+        List<List<Object>> pairs = new ArrayList<>(grants);
+        int[] deleted = jdbc.batchUpdate(REVOKE_ROLE_SQL,
+                pairs.stream().map(g -> new Object[]{g.get(0), g.get(1), g.get(2), at}).toList());
+        Set<UUID> affected = new LinkedHashSet<>();
+        int revoked = 0;
+        for (int i = 0; i < deleted.length; i++) {
+            if (deleted[i] != 0) {
+                affected.add((UUID) pairs.get(i).get(0));
+                revoked += Math.max(deleted[i], 1);
+            }
+        }
+        tokenEpochs.bumpAll(affected);
+
+        Object[] last = rows.get(rows.size() - 1);
+        Cursor next = rows.size() < chunkSize ? null : new Cursor(toInstant(last[3]), ((Number) last[0]).longValue());
+        return new ChunkResult(n, revoked, next);
+    }
+
+    private static Instant toInstant(Object value) {
+        if (value instanceof Instant i) {
+            return i;
+        }
+        if (value instanceof OffsetDateTime o) {
+            return o.toInstant();
+        }
+        return ((Timestamp) value).toInstant();
+    }
+
+    private record ChunkResult(int expired, int revoked, Cursor next) {}
+
+    private static final class Cursor {
+        Instant validUntil;
+        long id;
+
+        Cursor(Instant validUntil, long id) {
+            this.validUntil = validUntil;
+            this.id = id;
+        }
+
+        void advance(Cursor to) {
+            this.validUntil = to.validUntil;
+            this.id = to.id;
+        }
+    }
+}
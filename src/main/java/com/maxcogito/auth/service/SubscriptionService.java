@@ -4,17 +4,18 @@ import com.maxcogito.auth.domain.*;
 import com.maxcogito.auth.dto.SubscriptionRequestDto;
 import com.maxcogito.auth.dto.SubscriptionViewDto;
 import com.maxcogito.auth.mapper.SubscriptionMapper;
-import com.maxcogito.auth.repo.RoleRepository;
 import com.maxcogito.auth.repo.UserRepository;
 import com.maxcogito.auth.repo.UserSubscriptionRepository;
+import com.maxcogito.auth.security.TokenEpochRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -25,14 +26,29 @@ public class SubscriptionService {
     private static final Logger log = LoggerFactory.getLogger(SubscriptionService.class);
     private final UserRepository userRepository;
     private final UserSubscriptionRepository subscriptionRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roles;
+    private final TokenEpochRegistry tokenEpochs;
+    private final JdbcTemplate jdbc;
+
+    // upper bound for one bulk decision; keeps the IN list and batches reasonable
+    static final int MAX_BULK = 1000;
+
+    private static final String UPDATE_DECISION_SQL =
+            "update user_subscription set status = ?, approved_at = ?, approved_by = ?, term = ?, valid_until = ?, " +
+            "notes = coalesce(?, notes) where id = ?";
+    private static final String GRANT_ROLE_SQL =
+            "insert into user_roles (user_id, role_id) values (?, ?) on conflict do nothing";
 
     public SubscriptionService(UserRepository userRepository,
                                UserSubscriptionRepository subscriptionRepository,
-                               RoleRepository roleRepository) {
+                               RoleRegistry roles,
+                               TokenEpochRegistry tokenEpochs,
+                               JdbcTemplate jdbc) {
         this.userRepository = userRepository;
         this.subscriptionRepository = subscriptionRepository;
-        this.roleRepository = roleRepository;
+        this.roles = roles;
+        this.tokenEpochs = tokenEpochs;
+        this.jdbc = jdbc;
     }
 
     // ---------------------------------------------------------------------
@@ -167,10 +183,7 @@ public class SubscriptionService {
         }
 
         // Compute expiration date
-        int months = sub.getTerm().getMonths();
-        ZonedDateTime start = now.atZone(ZoneId.systemDefault());
-        ZonedDateTime end = start.plusMonths(months);
-        sub.setValidUntil(end.toInstant());
+        sub.setValidUntil(validUntil(sub.getTerm(), now));
 
         // Grant ROLE_* to the user based on serviceKind
         grantRoleForService(sub.getUser(), sub.getServiceKind());
@@ -192,48 +205,124 @@ public class SubscriptionService {
         return SubscriptionMapper.toDto(subscriptionRepository.save(sub));
     }
 
-    // ---------------------------------------------------------------------
-    // Internal helper: Assign roles based on service kind
-    // ---------------------------------------------------------------------
+    /**
+     * Approves many subscriptions with a fixed number of statements: one query for the
+     * subscriptions and their users, one batched update, one batched role insert and one token
+     * epoch bump for the users that gained a role. Already approved/active ones are left as is.
+     */
+    public BulkDecision approveAll(Collection<Long> ids, String adminUsername) {
+        List<UserSubscription> subs = loadForDecision(ids);
+        Instant now = Instant.now();
+        Timestamp at = Timestamp.from(now);
+
+        List<UserSubscription> changed = new ArrayList<>();
+        List<Long> unchanged = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Map<List<UUID>, UUID> grants = new LinkedHashMap<>(); // [user, role] -> user, de-duplicated
+        for (UserSubscription sub : subs) {
+            if (sub.getStatus() == SubscriptionStatus.APPROVED || sub.getStatus() == SubscriptionStatus.ACTIVE) {
+                unchanged.add(sub.getId());
+                continue;
+            }
+            SubscriptionTerm term = sub.getTerm() != null ? sub.getTerm() : SubscriptionTerm.ONE_MONTH;
+            // read-only entities: these only shape the response, the batch below writes the rows
+            sub.setStatus(SubscriptionStatus.APPROVED);
+            sub.setApprovedAt(now);
+            sub.setApprovedBy(adminUsername);
+            sub.setTerm(term);
+            sub.setValidUntil(validUntil(term, now));
+            changed.add(sub);
+            updates.add(new Object[]{SubscriptionStatus.APPROVED.name(), at, adminUsername, term.name(),
+                    Timestamp.from(sub.getValidUntil()), null, sub.getId()});
+
+            UUID userId = sub.getUser().getId();
+            grants.put(List.of(userId, roles.idOf(roleNameFor(sub.getServiceKind()))), userId);
+        }
 
-    protected void grantRoleForService(User user, SubscriptionServiceKind kind) {
+        jdbc.batchUpdate(UPDATE_DECISION_SQL, updates);
 
-        String roleName;
-        log.info("Granting role for user: " + user.getUsername());
-        log.info("roleName for user is:"+kind.toString());
-        switch (kind) {
-            case IDENTITY_SERVICE:
-                roleName = "ROLE_IDENTITY_SERVICE";
-                break;
+        List<List<UUID>> pairs = new ArrayList<>(grants.keySet());
+        int[] inserted = jdbc.batchUpdate(GRANT_ROLE_SQL, pairs.stream().map(p -> p.toArray()).toList());
+        Set<UUID> gainedRole = new LinkedHashSet<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] != 0) { // SUCCESS_NO_INFO (-2) is treated as granted; an extra bump is harmless
+                gainedRole.add(grants.get(pairs.get(i)));
+            }
+        }
+        tokenEpochs.bumpAll(gainedRole);
 
-            case USER_DATA_SERVICE:
-                roleName = "ROLE_DATA_SERVICE";
-                break;
+        return new BulkDecision(SubscriptionMapper.toDtoList(changed), unchanged, notFound(ids, subs));
+    }
 
-            case USER_SECURITY_SERVICE:
-                roleName = "ROLE_SECURITY_SERVICE";
-                break;
+    /** Rejects many subscriptions with one query and one batched update. */
+    public BulkDecision rejectAll(Collection<Long> ids, String adminUsername, String notes) {
+        List<UserSubscription> subs = loadForDecision(ids);
+        Instant now = Instant.now();
+        Timestamp at = Timestamp.from(now);
+
+        List<Object[]> updates = new ArrayList<>(subs.size());
+        for (UserSubscription sub : subs) {
+            sub.setStatus(SubscriptionStatus.REJECTED);
+            sub.setApprovedAt(now);
+            sub.setApprovedBy(adminUsername);
+            sub.setValidUntil(null);
+            if (notes != null) {
+                sub.setNotes(notes);
+            }
+            updates.add(new Object[]{SubscriptionStatus.REJECTED.name(), at, adminUsername,
+                    sub.getTerm() != null ? sub.getTerm().name() : null, null, notes, sub.getId()});
+        }
+        jdbc.batchUpdate(UPDATE_DECISION_SQL, updates);
 
-            case USER_COMMODITY_ANALYTIC_SERVICE:
-                roleName = "ROLE_COMMODITY_ANALYTIC_SERVICE";
-                break;
+        return new BulkDecision(SubscriptionMapper.toDtoList(subs), List.of(), notFound(ids, subs));
+    }
 
-            case USER_DATA_ANALYTIC_SERVICE:
-                roleName = "ROLE_DATA_ANALYTIC_SERVICE";
-                break;
+    public record BulkDecision(List<SubscriptionViewDto> updated, List<Long> unchanged, List<Long> notFound) {}
 
-            default:
-                throw new IllegalArgumentException("No role mapping for service: " + kind);
+    private List<UserSubscription> loadForDecision(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one subscription id is required.");
         }
+        if (ids.size() > MAX_BULK) {
+            throw new IllegalArgumentException("At most " + MAX_BULK + " subscriptions per request.");
+        }
+        return subscriptionRepository.findAllWithUserByIdIn(new LinkedHashSet<>(ids));
+    }
 
-        Role role = roleRepository.findByName(roleName)
-                .orElseThrow(() -> new IllegalStateException("Role not found: " + roleName));
+    private static List<Long> notFound(Collection<Long> ids, List<UserSubscription> found) {
+        Set<Long> foundIds = found.stream().map(UserSubscription::getId).collect(Collectors.toSet());
+        return ids.stream().distinct().filter(id -> !foundIds.contains(id)).toList();
+    }
+
+    private static Instant validUntil(SubscriptionTerm term, Instant from) {
+        return from.atZone(ZoneId.systemDefault()).plusMonths(term.getMonths()).toInstant();
+    }
+
+    // ---------------------------------------------------------------------
+    // Internal helper: Assign roles based on service kind
+    // ---------------------------------------------------------------------
+
+    protected void grantRoleForService(User user, SubscriptionServiceKind kind) {
+        String roleName = roleNameFor(kind);
+        log.debug("Granting {} to user {}", roleName, user.getUsername());
 
         if (user.getRoles().stream().noneMatch(r -> r.getName().equals(roleName))) {
-            user.getRoles().add(role);
+            user.getRoles().add(roles.reference(roleName));
             userRepository.save(user);
+            tokenEpochs.bump(user.getId());
         }
     }
+
+    static String roleNameFor(SubscriptionServiceKind kind) {
+        return switch (kind) {
+            case IDENTITY_SERVICE -> "ROLE_IDENTITY_SERVICE";
+            case USER_DATA_SERVICE -> "ROLE_DATA_SERVICE";
+            case USER_SECURITY_SERVICE -> "ROLE_SECURITY_SERVICE";
+            case USER_COMMODITY_ANALYTIC_SERVICE -> "ROLE_COMMODITY_ANALYTIC_SERVICE";
+            case USER_DATA_ANALYTIC_SERVICE -> "ROLE_DATA_ANALYTIC_SERVICE";
+            default -> throw new IllegalArgumentException("No role mapping for service: " + kind);
+        };
+    }
 }
 
 
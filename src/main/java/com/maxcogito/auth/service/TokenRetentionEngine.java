@@ -0,0 +1,298 @@
+package com.maxcogito.auth.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes dead rows from the expiring token tables: refresh_token, verification_token,
+ * password_reset_token and mfa_challenge.
+ *
+ * Each table is swept in passes that follow one index: a used/revoked/consumed flag pass keyed
+ * by id over the partial index, and an expiry pass keyed by (expires_at, id). A batch selects the
+ * next {@code batch-size} keys after the cursor and deletes them in its own short transaction,
+ * then the engine sleeps {@code pause-ms}, so a sweep never holds long locks, produces WAL in small
+ * steps and lets autovacuum keep up. The cursor also skips the dead index entries earlier batches
+ * left behind. {@code max-batches-per-table} caps one run; the rest waits for the next.
+ *
+ * With refresh_token partition retention (RefreshTokenPartitions) its expired months are dropped
+ * whole instead, and revoked rows wait for their partition to age out.
+ *
+ * A sweep holds a Postgres session advisory lock, so when every node fires the schedule only
+ * one of them does the work. The scheduled job hands it to {@link #sweepAsync}, which runs it on
+ * its own thread: the pauses would otherwise hold the shared scheduler thread for the whole run
+ * and stall every other @Scheduled poller.
+ */
+@Component
+public class TokenRetentionEngine implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRetentionEngine.class);
+
+    private static final long LOCK_KEY = 0x544B5254L; // "TKRT"
+    private static final UUID MIN_UUID = new UUID(0, 0);
+
+    /** deadFlag: rows that are dead before they expire (partial index on id), or null. */
+    private record Table(String name, String deadFlag) {}
+
+    private static final List<Table> TABLES = List.of(
+            new Table("refresh_token", "revoked = true"),
+            new Table("verification_token", "used = true"),
+            new Table("password_reset_token", "consumed = true"),
+            new Table("mfa_challenge", null));
+
+    private final JdbcTemplate jdbc;
+    private final RefreshTokenPartitions refreshTokenPartitions;
+    private final Clock clock;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final long pauseMs;
+    private final int maxBatchesPerTable;
+    private final Duration mfaAudit;
+
+    private final ThreadPoolExecutor worker;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder skippedRunning = new LongAdder();
+    private final LongAdder deleted = new LongAdder();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public TokenRetentionEngine(JdbcTemplate jdbc,
+                                RefreshTokenPartitions refreshTokenPartitions,
+                                Clock clock,
+                                @Value("${app.tokens.retention.enabled:true}") boolean enabled,
+                                @Value("${app.tokens.retention.batch-size:1000}") int batchSize,
+                                @Value("${app.tokens.retention.pause-ms:100}") long pauseMs,
+                                @Value("${app.tokens.retention.max-batches-per-table:500}") int maxBatchesPerTable,
+                                @Value("${app.tokens.retention.mfa-audit-days:30}") long mfaAuditDays) {
+        this.jdbc = jdbc;
+        this.refreshTokenPartitions = refreshTokenPartitions;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.pauseMs = Math.max(0, pauseMs);
+        this.maxBatchesPerTable = Math.max(1, maxBatchesPerTable);
+        // the in-memory MFA store writes challenges here as an audit trail (V8); keep them a while
+        this.mfaAudit = Duration.ofDays(Math.max(0, mfaAuditDays));
+        // one sweep at a time and no queue: a trigger that finds one running is dropped
+        this.worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "token-retention");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts {@link #sweep} on the retention thread and returns at once. Returns false if a
+     * sweep is still running on this node.
+     */
+    public boolean sweepAsync() {
+        if (!enabled) {
+            return false;
+        }
+        try {
+            worker.execute(() -> {
+                try {
+                    sweep();
+                } catch (Exception e) {
+                    log.warn("Token retention sweep failed: {}", e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            skippedRunning.increment();
+            log.debug("Token retention sweep skipped: the previous one is still running");
+            return false;
+        }
+    }
+
+    /**
+     * One sweep over every table. Returns per-table results (rows, batches, durationMs), or an
+     * empty map if retention is disabled or another node is already sweeping.
+     */
+    public Map<String, Map<String, Object>> sweep() {
+        if (!enabled) {
+            return Map.of();
+        }
+        Instant started = clock.instant();
+        Map<String, Map<String, Object>> tables = jdbc.execute((ConnectionCallback<Map<String, Map<String, Object>>>) con -> {
+            if (!tryLock(con)) {
+                return null;
+            }
+            try {
+                Map<String, Map<String, Object>> out = new LinkedHashMap<>();
+                Instant now = clock.instant();
+                for (Table table : TABLES) {
+                    if (table.name().equals("refresh_token") && refreshTokenPartitions.isPartitionRetention()) {
+                        long t0 = System.nanoTime();
+                        int retired = refreshTokenPartitions.dropExpired();
+                        out.put(table.name(), result(0, 0, t0, retired));
+                    } else {
+                        out.put(table.name(), sweepTable(con, table,
+                                table.name().equals("mfa_challenge") ? now.minus(mfaAudit) : now));
+                    }
+                }
+                return out;
+            } finally {
+                unlock(con);
+            }
+        });
+
+        if (tables == null) {
+            skipped.increment();
+            log.debug("Token retention sweep skipped: another node holds the lock");
+            return Map.of();
+        }
+        runs.increment();
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("at", started.toString());
+        run.put("durationMs", Duration.between(started, clock.instant()).toMillis());
+        run.put("tables", tables);
+        lastRun = run;
+        tables.forEach((table, r) -> log.info("Token retention: {} {}", table, r));
+        return tables;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("batchSize", batchSize);
+        out.put("pauseMs", pauseMs);
+        out.put("runs", runs.sum());
+        out.put("skippedLocked", skipped.sum());
+        out.put("skippedRunning", skippedRunning.sum());
+        out.put("deleted", deleted.sum());
+        out.put("lastRun", lastRun);
+        return out;
+    }
+
+    @Override
+    public void destroy() {
+        worker.shutdownNow(); // interrupts the pause; the batch loop stops and the lock is released
+    }
+
+    // ---------------------------------------------------------------------
+
+    /** Flag pass (if any), then expiry pass; rows with expires_at before {@code cutoff} are dead. */
+    private Map<String, Object> sweepTable(Connection con, Table table, Instant cutoff) throws SQLException {
+        long t0 = System.nanoTime();
+        long rows = 0;
+        int batches = 0;
+        List<String> passes = new ArrayList<>();
+        if (table.deadFlag() != null) {
+            passes.add(table.deadFlag());
+        }
+        passes.add(null);
+        for (String flag : passes) {
+            UUID afterId = MIN_UUID;
+            Timestamp afterExpiry = Timestamp.from(Instant.EPOCH);
+            while (batches < maxBatchesPerTable && !Thread.currentThread().isInterrupted()) {
+                List<UUID> ids = new ArrayList<>(batchSize);
+                try (PreparedStatement ps = con.prepareStatement(selectSql(table.name(), flag))) {
+                    if (flag != null) {
+                        ps.setObject(1, afterId);
+                        ps.setInt(2, batchSize);
+                    } else {
+                        ps.setTimestamp(1, Timestamp.from(cutoff));
+                        ps.setTimestamp(2, afterExpiry);
+                        ps.setObject(3, afterId);
+                        ps.setInt(4, batchSize);
+                    }
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getObject(1, UUID.class));
+                            if (flag == null) {
+                                afterExpiry = rs.getTimestamp(2);
+                            }
+                        }
+                    }
+                }
+                if (ids.isEmpty()) {
+                    break;
+                }
+                afterId = ids.get(ids.size() - 1); // rows come back in key order, so the last is the cursor
+                try (PreparedStatement ps = con.prepareStatement("delete from " + table.name() + " where id = any(?)")) {
+                    ps.setArray(1, con.createArrayOf("uuid", ids.toArray()));
+                    rows += ps.executeUpdate();
+                }
+                batches++;
+                if (ids.size() < batchSize) {
+                    break;
+                }
+                pause();
+            }
+        }
+        deleted.add(rows);
+        return result(rows, batches, t0, null);
+    }
+
+    private static String selectSql(String table, String flag) {
+        return flag != null
+                ? "select id from " + table + " where " + flag + " and id > ? order by id limit ?"
+                : "select id, expires_at from " + table + " where expires_at < ? " +
+                  "and (expires_at, id) > (?, ?) order by expires_at, id limit ?";
+    }
+
+    private static Map<String, Object> result(long rows, int batches, long startedNanos, Integer partitionsRetired) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rows", rows);
+        out.put("batches", batches);
+        if (partitionsRetired != null) {
+            out.put("partitionsRetired", partitionsRetired);
+        }
+        out.put("durationMs", (System.nanoTime() - startedNanos) / 1_000_000);
+        return out;
+    }
+
+    private void pause() {
+        if (pauseMs > 0) {
+            try {
+                Thread.sleep(pauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean tryLock(Connection con) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("select pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+            rs.next();
+            return rs.getBoolean(1);
+        }
+    }
+
+    private static void unlock(Connection con) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute("select pg_advisory_unlock(" + LOCK_KEY + ")");
+        }
+    }
+}
@@ -7,6 +7,10 @@ import com.maxcogito.auth.errors.RoleNotFoundException;
 import com.maxcogito.auth.errors.UserNotFoundException;
 import com.maxcogito.auth.repo.RoleRepository;
 import com.maxcogito.auth.repo.UserRepository;
+import com.maxcogito.auth.security.JwtPrincipal;
+import com.maxcogito.auth.security.TokenEpochRegistry;
+import com.maxcogito.auth.security.UserDetailsImpl;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,11 +24,14 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenEpochRegistry tokenEpochs;
 
-    public UserService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+    public UserService(UserRepository userRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder,
+                       TokenEpochRegistry tokenEpochs) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenEpochs = tokenEpochs;
     }
 
     public Optional<User> findByUsernameOrEmail(String s) {
@@ -39,6 +46,7 @@ public class UserService {
 
         // IMPORTANT: Do not cascade REMOVE from User → Role on your @ManyToMany
         // Deleting the user will clear join-table (user_roles) rows; Role rows remain.
+        tokenEpochs.markDeleted(user.getId());
         userRepository.delete(user);
     }
 
@@ -54,6 +62,7 @@ public class UserService {
         Set<Role> roles = resolveRoles(roleNames);
         user.setRoles(roles);          // assuming User has setRoles(Set<Role>)
         userRepository.save(user);
+        tokenEpochs.bump(user.getId());
     }
 
     @Transactional
@@ -63,6 +72,7 @@ public class UserService {
         Set<Role> roles = resolveRoles(roleNames);
         user.setRoles(roles);// assuming User has setRoles(Set<Role>)
         userRepository.save(user);
+        tokenEpochs.bump(user.getId());
         return(roles);
     }
 
@@ -80,6 +90,7 @@ public class UserService {
 
         user.getRoles().add(role);          // Set prevents duplicates in memory
         userRepository.save(user);                // relies on unique constraint at DB (recommended)
+        tokenEpochs.bump(user.getId());   // roles are baked into access tokens
 
         return user.getRoles()
                 .stream().map(r -> r.getName())
@@ -101,6 +112,7 @@ public class UserService {
                 .orElseThrow(() -> new RoleNotFoundException("Role not found: " + roleName));
         user.getRoles().remove(role);
         userRepository.save(user);
+        tokenEpochs.bump(user.getId());
     }
 
     @Transactional
@@ -113,6 +125,7 @@ public class UserService {
         Set<Role> roleSet = new HashSet<>();
         roleSet.add(role);
         userRepository.save(user);
+        tokenEpochs.bump(user.getId());
         return roleSet;
     }
 
@@ -126,6 +139,7 @@ public class UserService {
         Set<Role> roleSet = new HashSet<>();
         roleSet = user.getRoles();
         userRepository.save(user);
+        tokenEpochs.bump(user.getId());
         return roleSet;
     }
 
@@ -212,6 +226,21 @@ public class UserService {
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + userOrEmail));
     }
 
+    /**
+     * Loads the domain User behind the current authentication, whichever principal type
+     * the JWT filter produced (UserDetailsImpl in database mode, JwtPrincipal in stateless mode).
+     */
+    public User loadDomainUser(Authentication auth) {
+        Object principal = auth.getPrincipal();
+        if (principal instanceof UserDetailsImpl udi) {
+            return loadDomainUserById(udi.getId());
+        }
+        if (principal instanceof JwtPrincipal jp && jp.getId() != null) {
+            return loadDomainUserById(jp.getId());
+        }
+        return loadDomainUserByUsernameOrEmail(auth.getName());
+    }
+
     public User loadDomainUserByUsername(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException("User not found: " + username));
@@ -28,21 +28,18 @@ public class VerificationService {
     private static final Logger log = LoggerFactory.getLogger(VerificationService.class);
     private final VerificationTokenRepository repo;
     private final UserRepository userRepo;
-    private final EmailService emailService;
-    private final GraphMailService mailer;
+    private final OutboxService outbox;
     private final long ttlMinutes;
     private final String frontendBaseUrl;
     private final SecureRandom sr = new SecureRandom();
 
     public VerificationService(VerificationTokenRepository repo, UserRepository userRepo,
-                               EmailService emailService,
-                               GraphMailService mailer,
+                               OutboxService outbox,
                                @Value("${app.verification.tokenTtlMinutes:60}") long ttlMinutes,
                                @Value("${app.frontendBaseUrl:http://localhost:5173}") String frontendBaseUrl) {
         this.repo = repo;
         this.userRepo = userRepo;
-        this.emailService = emailService;
-        this.mailer = mailer;
+        this.outbox = outbox;
         this.ttlMinutes = ttlMinutes;
         this.frontendBaseUrl = frontendBaseUrl;
     }
@@ -77,8 +74,8 @@ public class VerificationService {
         """.formatted(user.getFirstName() == null ? user.getUsername() : user.getFirstName(),
                 hash, TTL.toMinutes());
 
-        // send
-        mailer.sendHtml(user.getEmail(), subject, html);
+        // sent by the outbox dispatcher once this transaction commits
+        outbox.enqueueEmail(user.getEmail(), subject, html);
     }
 
     @Transactional
@@ -152,7 +149,7 @@ public class VerificationService {
         String body = "Hello " + (user.getFirstName()!=null?user.getFirstName():"") + ",\n\n"
                 + "Please verify your email by clicking the link: " + link + "\n\n"
                 + "This link expires in " + ttlMinutes + " minutes.";
-        emailService.send(user.getEmail(), "Verify your email", body);
+        outbox.enqueueEmail(user.getEmail(), "Verify your email", body);
     }
 
     @Transactional
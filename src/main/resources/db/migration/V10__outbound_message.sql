@@ -0,0 +1,24 @@
+-- V10__outbound_message.sql
+
+-- Transactional outbox for email and SMS. Rows are inserted in the same transaction as the
+-- token/challenge they deliver and sent afterwards by OutboundMessageDispatcher.
+-- Bodies hold one-time codes, so they are stored AES-GCM encrypted and cleared once sent.
+CREATE TABLE IF NOT EXISTS outbound_message (
+                                                id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                                channel VARCHAR(16) NOT NULL,          -- EMAIL | SMS
+                                                recipient VARCHAR(320) NOT NULL,
+                                                subject VARCHAR(255) NULL,
+                                                body_enc TEXT NULL,
+                                                status VARCHAR(16) NOT NULL,           -- PENDING | SENDING | SENT | DEAD
+                                                attempts INT NOT NULL DEFAULT 0,
+                                                next_attempt_at TIMESTAMPTZ NOT NULL,
+                                                locked_until TIMESTAMPTZ NULL,
+                                                last_error VARCHAR(1000) NULL,
+                                                created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+                                                sent_at TIMESTAMPTZ NULL
+);
+
+-- Dispatcher poll: due PENDING rows and SENDING rows whose lease expired.
+CREATE INDEX IF NOT EXISTS idx_outbound_message_due
+    ON outbound_message(next_attempt_at)
+    WHERE status IN ('PENDING', 'SENDING');
@@ -0,0 +1,23 @@
+-- V11__payment_webhook_event.sql
+
+-- Inbox for payment gateway webhooks. The endpoint only inserts here and acknowledges; the
+-- unique key turns redelivered events into no-ops, and PaymentWebhookInbox applies rows later.
+CREATE TABLE IF NOT EXISTS payment_webhook_event (
+                                                     id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+                                                     provider VARCHAR(32) NOT NULL,
+                                                     session_id VARCHAR(255) NOT NULL,
+                                                     event VARCHAR(32) NOT NULL,            -- succeeded | failed
+                                                     subscription_ids VARCHAR(2000) NULL,   -- comma-separated, as sent by the gateway
+                                                     status VARCHAR(16) NOT NULL,           -- PENDING | PROCESSING | DONE | DEAD
+                                                     attempts INT NOT NULL DEFAULT 0,
+                                                     next_attempt_at TIMESTAMPTZ NOT NULL,
+                                                     locked_until TIMESTAMPTZ NULL,
+                                                     last_error VARCHAR(1000) NULL,
+                                                     received_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+                                                     processed_at TIMESTAMPTZ NULL,
+                                                     CONSTRAINT uq_payment_webhook_event UNIQUE (provider, session_id, event)
+);
+
+CREATE INDEX IF NOT EXISTS idx_payment_webhook_event_due
+    ON payment_webhook_event(next_attempt_at)
+    WHERE status IN ('PENDING', 'PROCESSING');
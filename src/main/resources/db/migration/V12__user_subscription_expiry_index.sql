@@ -0,0 +1,11 @@
+-- V12__user_subscription_expiry_index.sql
+
+-- SubscriptionExpiryEngine pages through granted subscriptions by (valid_until, id). user_subscription
+-- is created by Hibernate (the entity declares the same index), so only add it if the table exists.
+DO $$
+BEGIN
+    IF to_regclass('user_subscription') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS idx_user_subscription_status_valid_until
+            ON user_subscription(status, valid_until, id);
+    END IF;
+END $$;
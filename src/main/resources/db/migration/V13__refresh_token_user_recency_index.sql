@@ -0,0 +1,7 @@
+-- V13__refresh_token_user_recency_index.sql
+
+-- RefreshTokenRepository.revokeBeyondLimit ranks a user's live tokens by recency on every login and
+-- rotation; this keeps that to one index range scan per user, however many revoked rows pile up.
+CREATE INDEX IF NOT EXISTS idx_refresh_token_user_recency
+    ON refresh_token(user_id, (coalesce(last_used_at, created_at)) DESC, id DESC)
+    WHERE revoked = false;
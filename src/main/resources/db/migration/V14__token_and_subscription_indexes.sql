@@ -0,0 +1,59 @@
+-- V14__token_and_subscription_indexes.sql
+
+-- Indexes for the repository queries that still scanned whole tables. QueryPlanCheck
+-- (src/loadtest) EXPLAINs every custom @Query against a seeded database and fails on a seq scan.
+
+-- refresh_token: per-user revocation and ON DELETE CASCADE from app_user.
+CREATE INDEX IF NOT EXISTS idx_refresh_token_user_id
+    ON refresh_token(user_id);
+
+-- Active-session reports (findActive, countActiveUsers, findActiveUserSessionsRaw) range over
+-- expires_at; the included columns let the aggregates run as index-only scans. It also serves the
+-- expired half of deleteRevokedOrExpired.
+CREATE INDEX IF NOT EXISTS idx_refresh_token_expires_at
+    ON refresh_token(expires_at) INCLUDE (revoked, user_id, last_used_at, created_at);
+
+-- The revoked half of deleteRevokedOrExpired; revoked rows are purged, so this stays small.
+CREATE INDEX IF NOT EXISTS idx_refresh_token_revoked
+    ON refresh_token(id)
+    WHERE revoked = true;
+
+-- verification_token: deleteByUserId / FK cascade, and both halves of deleteUsedOrExpired.
+CREATE INDEX IF NOT EXISTS idx_verification_token_user_id
+    ON verification_token(user_id);
+CREATE INDEX IF NOT EXISTS idx_verification_token_expires_at
+    ON verification_token(expires_at);
+CREATE INDEX IF NOT EXISTS idx_verification_token_used
+    ON verification_token(id)
+    WHERE used = true;
+
+-- password_reset_token: deleteByUserId / FK cascade.
+CREATE INDEX IF NOT EXISTS idx_password_reset_token_user_id
+    ON password_reset_token(user_id);
+
+-- Purge jobs and the dead-letter listing only ever touch one status.
+CREATE INDEX IF NOT EXISTS idx_outbound_message_sent_at
+    ON outbound_message(sent_at)
+    WHERE status = 'SENT';
+CREATE INDEX IF NOT EXISTS idx_outbound_message_dead
+    ON outbound_message(created_at)
+    WHERE status = 'DEAD';
+CREATE INDEX IF NOT EXISTS idx_payment_webhook_event_processed_at
+    ON payment_webhook_event(processed_at)
+    WHERE status = 'DONE';
+
+-- user_subscription and payment_transaction are created by Hibernate (the entities declare the
+-- same indexes), so only add them if the tables exist.
+DO $$
+BEGIN
+    IF to_regclass('user_subscription') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS idx_user_subscription_user_kind
+            ON user_subscription(user_id, service_kind);
+    END IF;
+    IF to_regclass('payment_transaction') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS idx_payment_transaction_provider_id
+            ON payment_transaction(provider_id);
+        CREATE INDEX IF NOT EXISTS idx_payment_transaction_status_created
+            ON payment_transaction(status, created_at);
+    END IF;
+END $$;
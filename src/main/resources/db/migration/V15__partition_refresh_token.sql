@@ -0,0 +1,65 @@
+-- V15__partition_refresh_token.sql
+
+-- refresh_token becomes range-partitioned by created_at, one partition per UTC month named
+-- refresh_token_pYYYYMM. A token expires at most RefreshToken.MAX_LIFETIME after it is created,
+-- so once a month is that far behind, every row in its partition is dead and RefreshTokenPartitions
+-- drops (or detaches) the whole partition instead of deleting row by row. Repository queries on live
+-- tokens also bound created_at, which lets the planner prune to the last couple of partitions.
+--
+-- Postgres cannot partition a table in place: the rows are copied into a new partitioned table,
+-- which then takes the old name. Runs inside the migration transaction; purge revoked/expired
+-- tokens first on a large table to keep the copy short.
+
+CREATE TABLE refresh_token_partitioned (
+                                           id UUID NOT NULL DEFAULT gen_random_uuid(),
+                                           user_id UUID NOT NULL,
+                                           token VARCHAR(128) NOT NULL,
+                                           expires_at TIMESTAMPTZ NOT NULL,
+                                           revoked BOOLEAN NOT NULL DEFAULT false,
+                                           created_at TIMESTAMPTZ NOT NULL,
+                                           revoked_at TIMESTAMPTZ,
+                                           last_used_at TIMESTAMPTZ
+) PARTITION BY RANGE (created_at);
+
+-- One partition per month from the oldest existing row to three months ahead; later months are
+-- created by RefreshTokenPartitions.
+DO $$
+DECLARE
+    m TIMESTAMPTZ;
+    last TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + interval '3 months';
+BEGIN
+    SELECT date_trunc('month', coalesce(min(created_at), now()) AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+    INTO m FROM refresh_token;
+    WHILE m <= last LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF refresh_token_partitioned FOR VALUES FROM (%L) TO (%L)',
+                       'refresh_token_p' || to_char(m AT TIME ZONE 'UTC', 'YYYYMM'), m, m + interval '1 month');
+        m := m + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO refresh_token_partitioned (id, user_id, token, expires_at, revoked, created_at, revoked_at, last_used_at)
+SELECT id, user_id, token, expires_at, revoked, created_at, revoked_at, last_used_at
+FROM refresh_token;
+
+DROP TABLE refresh_token;
+ALTER TABLE refresh_token_partitioned RENAME TO refresh_token;
+
+-- Unique constraints on a partitioned table must include the partition key, so the primary key is
+-- (id, created_at) and token keeps a plain index; tokens are random 256-bit hashes.
+ALTER TABLE refresh_token ADD CONSTRAINT refresh_token_pkey PRIMARY KEY (id, created_at);
+ALTER TABLE refresh_token ADD CONSTRAINT refresh_token_user_fk
+    FOREIGN KEY (user_id) REFERENCES app_user(id) ON DELETE CASCADE;
+
+-- Same indexes as before (V13, V14), now partitioned indexes.
+CREATE INDEX idx_refresh_token_token
+    ON refresh_token(token);
+CREATE INDEX idx_refresh_token_user_recency
+    ON refresh_token(user_id, (coalesce(last_used_at, created_at)) DESC, id DESC)
+    WHERE revoked = false;
+CREATE INDEX idx_refresh_token_user_id
+    ON refresh_token(user_id);
+CREATE INDEX idx_refresh_token_expires_at
+    ON refresh_token(expires_at) INCLUDE (revoked, user_id, last_used_at, created_at);
+CREATE INDEX idx_refresh_token_revoked
+    ON refresh_token(id)
+    WHERE revoked = true;
@@ -0,0 +1,13 @@
+-- V16__token_retention_indexes.sql
+
+-- TokenRetentionEngine deletes dead rows in keyset batches: by id over a partial index for the
+-- used/consumed flag, and by (expires_at, id) for expiry. verification_token and refresh_token
+-- already have both (V14/V15); these cover the remaining two tables.
+CREATE INDEX IF NOT EXISTS idx_password_reset_token_expires_at
+    ON password_reset_token(expires_at);
+CREATE INDEX IF NOT EXISTS idx_password_reset_token_consumed
+    ON password_reset_token(id)
+    WHERE consumed = true;
+
+CREATE INDEX IF NOT EXISTS idx_mfa_challenge_expires_at
+    ON mfa_challenge(expires_at);
@@ -0,0 +1,13 @@
+-- V17__user_totp_pending_secret.sql
+
+-- A new authenticator secret waits here until /mfa/totp/confirm has seen a code from it; the
+-- active totp_secret_enc and mfa_method stay in force meanwhile, so starting an enrollment
+-- cannot switch TOTP off. Unconfirmed secrets left by the old flow move over.
+ALTER TABLE app_user
+    ADD COLUMN IF NOT EXISTS totp_pending_secret_enc TEXT NULL;
+
+UPDATE app_user
+   SET totp_pending_secret_enc = totp_secret_enc,
+       totp_secret_enc = NULL
+ WHERE totp_confirmed_at IS NULL
+   AND totp_secret_enc IS NOT NULL;
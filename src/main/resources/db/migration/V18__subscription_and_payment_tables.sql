@@ -0,0 +1,50 @@
+-- V18__subscription_and_payment_tables.sql
+
+-- user_subscription, payment_transaction and payment_transaction_subs used to be created by
+-- Hibernate (ddl-auto=update). Create them here so Flyway owns the whole schema and Hibernate can
+-- run with ddl-auto=validate. IF NOT EXISTS leaves databases where Hibernate already made them
+-- alone; the indexes from V12/V14 are repeated for databases that only get the tables now.
+
+CREATE TABLE IF NOT EXISTS user_subscription (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id      UUID NOT NULL REFERENCES app_user(id) ON DELETE CASCADE,
+    service_kind VARCHAR(255) NOT NULL,
+    status       VARCHAR(255) NOT NULL,
+    trial        BOOLEAN NOT NULL DEFAULT FALSE,
+    requested_at TIMESTAMPTZ NOT NULL,
+    approved_at  TIMESTAMPTZ NULL,
+    approved_by  VARCHAR(255) NULL,
+    valid_until  TIMESTAMPTZ NULL,
+    term         VARCHAR(255) NULL,
+    notes        VARCHAR(1000) NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_subscription_status_valid_until
+    ON user_subscription(status, valid_until, id);
+CREATE INDEX IF NOT EXISTS idx_user_subscription_user_kind
+    ON user_subscription(user_id, service_kind);
+
+CREATE TABLE IF NOT EXISTS payment_transaction (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id     UUID NOT NULL REFERENCES app_user(id) ON DELETE CASCADE,
+    provider    VARCHAR(255) NOT NULL,
+    provider_id VARCHAR(255) NULL,
+    amount      NUMERIC(38, 2) NOT NULL,
+    currency    VARCHAR(255) NOT NULL,
+    status      VARCHAR(255) NOT NULL,
+    created_at  TIMESTAMPTZ NOT NULL,
+    updated_at  TIMESTAMPTZ NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_payment_transaction_provider_id
+    ON payment_transaction(provider_id);
+CREATE INDEX IF NOT EXISTS idx_payment_transaction_status_created
+    ON payment_transaction(status, created_at);
+
+CREATE TABLE IF NOT EXISTS payment_transaction_subs (
+    payment_id      BIGINT NOT NULL REFERENCES payment_transaction(id) ON DELETE CASCADE,
+    subscription_id BIGINT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_payment_transaction_subs_payment_id
+    ON payment_transaction_subs(payment_id);
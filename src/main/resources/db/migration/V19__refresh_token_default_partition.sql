@@ -0,0 +1,15 @@
+-- V19__refresh_token_default_partition.sql
+
+-- A DEFAULT partition catches refresh tokens whose month has no partition yet, so logins and
+-- rotations keep working when RefreshTokenPartitions.maintain has not run (it only logs failures).
+-- maintain moves such rows into their month's partition when it creates it and reports what is
+-- left as defaultRows; in normal operation this partition stays empty.
+--
+-- Locking (V15): retiring a month in RefreshTokenPartitions.dropExpired runs
+-- ALTER TABLE refresh_token DETACH PARTITION, which takes an ACCESS EXCLUSIVE lock on
+-- refresh_token. Every login, refresh and session query waits while it is held, and it queues
+-- behind any query already running on the table, so dropExpired sets lock_timeout
+-- (app.refresh.partitions.lock-timeout-ms) and leaves the month for the next run if it cannot get
+-- the lock quickly. DETACH ... CONCURRENTLY would avoid the lock, but Postgres does not allow it
+-- once a default partition exists.
+CREATE TABLE IF NOT EXISTS refresh_token_default PARTITION OF refresh_token DEFAULT;
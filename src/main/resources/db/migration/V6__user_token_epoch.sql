@@ -0,0 +1,20 @@
+-- V6__user_token_epoch.sql
+
+-- Per-user access-token epoch. Access tokens carry the epoch they were issued with ("tep" claim);
+-- bumping the column invalidates every access token issued before the bump.
+ALTER TABLE app_user
+    ADD COLUMN IF NOT EXISTS token_epoch BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS token_epoch_changed_at TIMESTAMPTZ NULL;
+
+-- Nodes poll for epochs changed since their last refresh.
+CREATE INDEX IF NOT EXISTS idx_app_user_token_epoch_changed_at
+    ON app_user(token_epoch_changed_at)
+    WHERE token_epoch_changed_at IS NOT NULL;
+
+-- Deleted users no longer have a row to poll; keep a short-lived tombstone instead.
+CREATE TABLE IF NOT EXISTS user_token_tombstone (
+                                                    user_id UUID PRIMARY KEY,
+                                                    deleted_at TIMESTAMPTZ NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_user_token_tombstone_deleted_at
+    ON user_token_tombstone(deleted_at);
@@ -0,0 +1,14 @@
+-- V7__jwt_signing_key.sql
+
+-- Asymmetric JWT signing key ring (app.jwt.signing-mode=es256).
+-- Private keys are stored AES-GCM encrypted; public keys are published via /.well-known/jwks.json.
+CREATE TABLE IF NOT EXISTS jwt_signing_key (
+                                               kid VARCHAR(64) PRIMARY KEY,
+                                               alg VARCHAR(16) NOT NULL,
+                                               private_key_enc TEXT NOT NULL,
+                                               public_key TEXT NOT NULL,
+                                               created_at TIMESTAMPTZ NOT NULL,
+                                               retired_at TIMESTAMPTZ NULL
+);
+CREATE INDEX IF NOT EXISTS idx_jwt_signing_key_retired_at
+    ON jwt_signing_key(retired_at);
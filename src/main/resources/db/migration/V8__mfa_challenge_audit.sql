@@ -0,0 +1,7 @@
+-- V8__mfa_challenge_audit.sql
+
+-- The in-memory MFA challenge store (app.mfa.challenge-store=memory) writes challenges here in
+-- batches for audit instead of deleting them on success; consumed_at marks a successful verify.
+ALTER TABLE mfa_challenge
+    ADD COLUMN IF NOT EXISTS consumed_at TIMESTAMPTZ NULL;
+
@@ -0,0 +1,10 @@
+-- V9__user_totp.sql
+
+-- Authenticator-app MFA (RFC 6238). The shared secret is stored AES-GCM encrypted (SecretCipher);
+-- totp_confirmed_at stays NULL until the user has proven the app works with a first code.
+-- totp_last_step is the last accepted 30s time-step; it only ever moves forward, so a code
+-- cannot be replayed within its validity window.
+ALTER TABLE app_user
+    ADD COLUMN IF NOT EXISTS totp_secret_enc TEXT NULL,
+    ADD COLUMN IF NOT EXISTS totp_confirmed_at TIMESTAMPTZ NULL,
+    ADD COLUMN IF NOT EXISTS totp_last_step BIGINT NOT NULL DEFAULT 0;